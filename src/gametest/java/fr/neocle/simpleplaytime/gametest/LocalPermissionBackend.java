@@ -0,0 +1,47 @@
+package fr.neocle.simpleplaytime.gametest;
+
+import fr.neocle.simpleplaytime.integration.PermissionBackend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory stand-in for LuckPerms. Changes complete off the server thread like LuckPerms' storage executor does,
+// so group and permission rewards take the same asynchronous path as in production.
+final class LocalPermissionBackend implements PermissionBackend {
+    private final Map<UUID, Set<String>> groups = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> permissions = new ConcurrentHashMap<>();
+
+    @Override
+    public CompletableFuture<Void> addNodes(UUID playerId, List<String> groups, List<String> permissions) {
+        return CompletableFuture.runAsync(() -> {
+            nodes(this.groups, playerId).addAll(groups);
+            nodes(this.permissions, playerId).addAll(permissions);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> removeGroup(UUID playerId, String group) {
+        return CompletableFuture.runAsync(() -> nodes(groups, playerId).remove(group));
+    }
+
+    @Override
+    public CompletableFuture<Void> removePermission(UUID playerId, String permission) {
+        return CompletableFuture.runAsync(() -> nodes(permissions, playerId).remove(permission));
+    }
+
+    boolean hasGroup(UUID playerId, String group) {
+        return nodes(groups, playerId).contains(group);
+    }
+
+    boolean hasPermission(UUID playerId, String permission) {
+        return nodes(permissions, playerId).contains(permission);
+    }
+
+    private static Set<String> nodes(Map<UUID, Set<String>> nodes, UUID playerId) {
+        return nodes.computeIfAbsent(playerId, id -> ConcurrentHashMap.newKeySet());
+    }
+}
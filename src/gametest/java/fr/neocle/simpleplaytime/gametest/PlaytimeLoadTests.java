@@ -0,0 +1,313 @@
+package fr.neocle.simpleplaytime.gametest;
+
+import fr.neocle.simpleplaytime.SimplePlaytime;
+import fr.neocle.simpleplaytime.api.PlaytimeAPI;
+import fr.neocle.simpleplaytime.api.RewardListener;
+import fr.neocle.simpleplaytime.config.PlaytimeConfig;
+import fr.neocle.simpleplaytime.data.PlaytimeManager;
+import fr.neocle.simpleplaytime.integration.LuckPermsIntegration;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.gametest.framework.AfterBatch;
+import net.minecraft.gametest.framework.BeforeBatch;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Load tests run headless by `gradlew runGameTestServer`. Each test has its own batch so they never share the
+// server, and LuckPerms is replaced by an in-memory backend.
+// The budgets cover the mod's own work (the tick handler, saves, retained heap), not vanilla's cost of the players.
+// Whatever a test changes is put back after its batch, whether it passed, failed or timed out.
+@GameTestHolder(SimplePlaytime.MOD_ID)
+@PrefixGameTestTemplate(false)
+public class PlaytimeLoadTests {
+    private static final String TEMPLATE = "empty";
+    private static final String CHURN_BATCH = "playtime_churn";
+    private static final String SET_STORM_BATCH = "playtime_set_storm";
+    private static final String REWARDS_BATCH = "playtime_rewards";
+    private static final String REWARDS_ENABLED_BATCH = "playtime_rewards_enabled";
+    private static final int TIMEOUT_TICKS = 20 * 60 * 10;
+    private static final int JOINS_PER_TICK = 100;
+    private static final int CHURN_TICKS = 20 * 10;
+    private static final long MILLIS_PER_HOUR = 1000L * 60 * 60;
+
+    private static final long TICK_P99_BUDGET_NANOS = 2_000_000L;
+    private static final long TICK_MAX_BUDGET_NANOS = 50_000_000L;
+    private static final long SET_PLAYTIME_BUDGET_NANOS = 250_000L;
+    private static final long SAVE_BUDGET_NANOS = 20_000_000L;
+    private static final long COMPACTION_BUDGET_NANOS = 2_000_000_000L;
+    private static final long HEAP_BUDGET_BYTES_PER_PLAYER = 8 * 1024L;
+
+    private static final String REWARD_GROUP = "loadtest";
+    private static final String REWARD_PERMISSION = "simpleplaytime.loadtest";
+    private static final String REWARD_TAG = "simpleplaytime_loadtest";
+
+    private static boolean savedRewardsEnabled;
+    private static List<? extends String> savedRewardConfigs;
+    private static SimulatedPlayers activePlayers;
+    private static RewardListener activeListener;
+
+    // Players join, a few percent of them reconnect every tick for ten seconds, then everyone leaves.
+    // Rewards are off here and in the storm, rewardThresholdCrossing covers them.
+    @GameTest(template = TEMPLATE, batch = CHURN_BATCH, timeoutTicks = TIMEOUT_TICKS)
+    public static void loginChurn(GameTestHelper helper) {
+        MinecraftServer server = helper.getLevel().getServer();
+        SimulatedPlayers players = new SimulatedPlayers(server, "churn", SimulatedPlayers.defaultCount());
+        activePlayers = players;
+        SplittableRandom random = new SplittableRandom(42);
+        PlaytimeConfig.ENABLE_REWARDS.set(false);
+        long heapBefore = usedHeapAfterGc();
+        PlaytimeMetrics.reset();
+
+        helper.startSequence()
+                .thenExecuteFor(ticksFor(players.size()), () -> players.joinNext(JOINS_PER_TICK))
+                .thenExecute(() -> {
+                    for (int i = 0; i < players.size(); i++) {
+                        helper.assertTrue(PlaytimeAPI.get().isOnline(players.id(i)), players.name(i) + " has no session");
+                    }
+                })
+                .thenExecuteFor(CHURN_TICKS, () -> players.churn(random, Math.max(1, players.size() / 50)))
+                .thenExecuteFor(ticksFor(players.size()), () -> players.leaveNext(JOINS_PER_TICK))
+                .thenExecute(() -> {
+                    PlaytimeManager manager = PlaytimeManager.getInstance();
+                    for (int i = 0; i < players.size(); i++) {
+                        helper.assertTrue(!PlaytimeAPI.get().isOnline(players.id(i)), players.name(i) + " is still online");
+                        helper.assertTrue(manager.getPlaytime(players.id(i)) > 0L, players.name(i) + " has no playtime");
+                    }
+                    assertTickBudget(helper);
+
+                    long perPlayer = (usedHeapAfterGc() - heapBefore) / players.size();
+                    helper.assertTrue(perPlayer <= HEAP_BUDGET_BYTES_PER_PLAYER,
+                            "Heap grew by " + perPlayer + " bytes per tracked player");
+                })
+                .thenSucceed();
+    }
+
+    // Every online player gets /setplaytime in the same tick, then the whole server is saved and compacted
+    @GameTest(template = TEMPLATE, batch = SET_STORM_BATCH, timeoutTicks = TIMEOUT_TICKS)
+    public static void setPlaytimeStorm(GameTestHelper helper) {
+        MinecraftServer server = helper.getLevel().getServer();
+        SimulatedPlayers players = new SimulatedPlayers(server, "set", SimulatedPlayers.defaultCount());
+        activePlayers = players;
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+        PlaytimeConfig.ENABLE_REWARDS.set(false);
+        PlaytimeMetrics.reset();
+
+        helper.startSequence()
+                .thenExecuteFor(ticksFor(players.size()), () -> players.joinNext(JOINS_PER_TICK))
+                .thenExecute(() -> {
+                    CommandSourceStack source = server.createCommandSourceStack().withSuppressedOutput();
+                    long start = System.nanoTime();
+                    for (int i = 0; i < players.size(); i++) {
+                        server.getCommands().performPrefixedCommand(source, "setplaytime " + players.name(i) + " " + hoursFor(i) + "h");
+                    }
+                    long perCommand = (System.nanoTime() - start) / players.size();
+                    helper.assertTrue(perCommand <= SET_PLAYTIME_BUDGET_NANOS,
+                            "/setplaytime took " + perCommand + " ns per player");
+
+                    for (int i = 0; i < players.size(); i++) {
+                        long playtime = manager.getPlaytime(players.id(i));
+                        helper.assertTrue(playtime >= hoursFor(i) * MILLIS_PER_HOUR && playtime < hoursFor(i) * MILLIS_PER_HOUR + 60_000L,
+                                players.name(i) + " has " + playtime + " ms");
+                    }
+                })
+                .thenExecute(() -> {
+                    long start = System.nanoTime();
+                    manager.saveData();
+                    long saveNanos = System.nanoTime() - start;
+                    helper.assertTrue(saveNanos <= SAVE_BUDGET_NANOS, "Save took " + saveNanos + " ns on the server thread");
+
+                    start = System.nanoTime();
+                    manager.compactData();
+                    manager.awaitPendingSaves();
+                    long compactionNanos = System.nanoTime() - start;
+                    helper.assertTrue(compactionNanos <= COMPACTION_BUDGET_NANOS, "Save and compaction took " + compactionNanos + " ns");
+                })
+                .thenExecuteFor(ticksFor(players.size()), () -> players.leaveNext(JOINS_PER_TICK))
+                .thenExecute(() -> assertTickBudget(helper))
+                .thenSucceed();
+    }
+
+    // Every online player crosses a group, a permission and a command tier in the same second; the commands are
+    // spread over the following ticks, so the tick budget holds through the burst
+    @GameTest(template = TEMPLATE, batch = REWARDS_BATCH, timeoutTicks = TIMEOUT_TICKS)
+    public static void rewardThresholdCrossing(GameTestHelper helper) {
+        MinecraftServer server = helper.getLevel().getServer();
+        SimulatedPlayers players = new SimulatedPlayers(server, "reward", SimulatedPlayers.defaultCount());
+        activePlayers = players;
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+        LocalPermissionBackend permissions = new LocalPermissionBackend();
+        AtomicInteger granted = new AtomicInteger();
+        RewardListener listener = reward -> granted.incrementAndGet();
+        int expected = players.size() * 3;
+
+        LuckPermsIntegration.setBackend(permissions);
+        PlaytimeConfig.ENABLE_REWARDS.set(true);
+        PlaytimeConfig.REWARD_CONFIGS.set(List.of(
+                "1:group:" + REWARD_GROUP,
+                "1:permission:" + REWARD_PERMISSION,
+                "1:command:tag %player% add " + REWARD_TAG));
+        manager.invalidateRewardSchedule();
+        manager.addRewardListener(listener);
+        activeListener = listener;
+
+        helper.startSequence()
+                .thenExecuteFor(ticksFor(players.size()), () -> players.joinNext(JOINS_PER_TICK))
+                .thenExecute(() -> {
+                    for (int i = 0; i < players.size(); i++) {
+                        manager.setPlaytimeMillis(server, players.id(i), MILLIS_PER_HOUR - 1000L);
+                    }
+                    PlaytimeMetrics.reset();
+                })
+                .thenWaitUntil(() -> helper.assertTrue(granted.get() >= expected,
+                        "Granted " + granted.get() + " of " + expected + " rewards"))
+                .thenExecute(() -> {
+                    for (int i = 0; i < players.size(); i++) {
+                        UUID playerId = players.id(i);
+                        helper.assertTrue(permissions.hasGroup(playerId, REWARD_GROUP), players.name(i) + " is not in the group");
+                        helper.assertTrue(permissions.hasPermission(playerId, REWARD_PERMISSION), players.name(i) + " lacks the permission");
+                        helper.assertTrue(players.player(i).getTags().contains(REWARD_TAG), players.name(i) + " was not tagged");
+                    }
+                    helper.assertTrue(manager.getPendingRewardCommands() == 0, "Reward commands are still queued");
+                    helper.assertTrue(PlaytimeMetrics.getRewardCommandQueuePeak() > 0, "Reward commands were not queued");
+                    assertTickBudget(helper);
+                })
+                .thenExecuteFor(ticksFor(players.size()), () -> players.leaveNext(JOINS_PER_TICK))
+                .thenSucceed();
+    }
+
+    // Players who joined while rewards were off are scheduled once a reload turns them on, with the tiers unchanged
+    @GameTest(template = TEMPLATE, batch = REWARDS_ENABLED_BATCH, timeoutTicks = TIMEOUT_TICKS)
+    public static void rewardsEnabledByReload(GameTestHelper helper) {
+        MinecraftServer server = helper.getLevel().getServer();
+        SimulatedPlayers players = new SimulatedPlayers(server, "enable", SimulatedPlayers.defaultCount());
+        activePlayers = players;
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+        AtomicInteger granted = new AtomicInteger();
+        RewardListener listener = reward -> granted.incrementAndGet();
+        int expected = players.size();
+
+        PlaytimeConfig.ENABLE_REWARDS.set(false);
+        PlaytimeConfig.REWARD_CONFIGS.set(List.of("1:command:tag %player% add " + REWARD_TAG));
+        manager.invalidateRewardSchedule();
+        manager.addRewardListener(listener);
+        activeListener = listener;
+
+        helper.startSequence()
+                .thenExecuteFor(ticksFor(players.size()), () -> players.joinNext(JOINS_PER_TICK))
+                .thenExecute(() -> {
+                    for (int i = 0; i < players.size(); i++) {
+                        manager.setPlaytimeMillis(server, players.id(i), MILLIS_PER_HOUR);
+                    }
+                })
+                // A few ticks with rewards off, then only the switch flips
+                .thenIdle(20)
+                .thenExecute(() -> {
+                    helper.assertTrue(granted.get() == 0, "Granted " + granted.get() + " rewards while they were off");
+                    PlaytimeConfig.ENABLE_REWARDS.set(true);
+                    manager.invalidateRewardSchedule();
+                })
+                .thenWaitUntil(() -> helper.assertTrue(granted.get() >= expected,
+                        "Granted " + granted.get() + " of " + expected + " rewards"))
+                .thenExecute(() -> {
+                    for (int i = 0; i < players.size(); i++) {
+                        helper.assertTrue(players.player(i).getTags().contains(REWARD_TAG), players.name(i) + " was not tagged");
+                    }
+                })
+                .thenExecuteFor(ticksFor(players.size()), () -> players.leaveNext(JOINS_PER_TICK))
+                .thenSucceed();
+    }
+
+    @BeforeBatch(batch = CHURN_BATCH)
+    public static void beforeChurn(ServerLevel level) {
+        saveSettings();
+    }
+
+    @AfterBatch(batch = CHURN_BATCH)
+    public static void afterChurn(ServerLevel level) {
+        restoreSettings();
+    }
+
+    @BeforeBatch(batch = SET_STORM_BATCH)
+    public static void beforeSetStorm(ServerLevel level) {
+        saveSettings();
+    }
+
+    @AfterBatch(batch = SET_STORM_BATCH)
+    public static void afterSetStorm(ServerLevel level) {
+        restoreSettings();
+    }
+
+    @BeforeBatch(batch = REWARDS_BATCH)
+    public static void beforeRewards(ServerLevel level) {
+        saveSettings();
+    }
+
+    @AfterBatch(batch = REWARDS_BATCH)
+    public static void afterRewards(ServerLevel level) {
+        restoreSettings();
+    }
+
+    @BeforeBatch(batch = REWARDS_ENABLED_BATCH)
+    public static void beforeRewardsEnabled(ServerLevel level) {
+        saveSettings();
+    }
+
+    @AfterBatch(batch = REWARDS_ENABLED_BATCH)
+    public static void afterRewardsEnabled(ServerLevel level) {
+        restoreSettings();
+    }
+
+    private static void saveSettings() {
+        savedRewardsEnabled = PlaytimeConfig.ENABLE_REWARDS.get();
+        savedRewardConfigs = PlaytimeConfig.REWARD_CONFIGS.get();
+    }
+
+    // A failed test leaves its players connected and its listener registered, so both are cleaned up here too
+    private static void restoreSettings() {
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+        if (activePlayers != null) {
+            activePlayers.leaveAll();
+            activePlayers = null;
+        }
+        if (activeListener != null) {
+            manager.removeRewardListener(activeListener);
+            activeListener = null;
+        }
+
+        PlaytimeConfig.REWARD_CONFIGS.set(savedRewardConfigs);
+        PlaytimeConfig.ENABLE_REWARDS.set(savedRewardsEnabled);
+        manager.invalidateRewardSchedule();
+        LuckPermsIntegration.initialize();
+    }
+
+    private static void assertTickBudget(GameTestHelper helper) {
+        long p99 = PlaytimeMetrics.TICK.percentile(0.99);
+        long max = PlaytimeMetrics.TICK.max();
+        helper.assertTrue(p99 <= TICK_P99_BUDGET_NANOS, "Tick handler p99 was " + p99 + " ns");
+        helper.assertTrue(max <= TICK_MAX_BUDGET_NANOS, "Tick handler max was " + max + " ns");
+    }
+
+    private static int ticksFor(int players) {
+        return (players + JOINS_PER_TICK - 1) / JOINS_PER_TICK;
+    }
+
+    private static long hoursFor(int index) {
+        return 1 + index % 100;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,126 @@
+package fr.neocle.simpleplaytime.gametest;
+
+import com.mojang.authlib.GameProfile;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import net.minecraft.network.Connection;
+import net.minecraft.network.DisconnectionDetails;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.protocol.PacketFlow;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.network.CommonListenerCookie;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+// Players joined through the real PlayerList over in-memory channels, so login, logout, ticking and commands run
+// the same code as for network clients. Everything sent to them is dropped on write instead of queued.
+// Ids are random per run: the playtime data outlives the test world, and a rerun must start without rewards.
+final class SimulatedPlayers {
+    private static final ChannelHandler DROP_OUTBOUND = new DropOutbound();
+
+    private final MinecraftServer server;
+    private final GameProfile[] profiles;
+    private final ServerPlayer[] online;
+    private final EmbeddedChannel[] channels;
+
+    SimulatedPlayers(MinecraftServer server, String prefix, int count) {
+        this.server = server;
+        this.profiles = new GameProfile[count];
+        this.online = new ServerPlayer[count];
+        this.channels = new EmbeddedChannel[count];
+        for (int i = 0; i < count; i++) {
+            profiles[i] = new GameProfile(UUID.randomUUID(), prefix + i);
+        }
+    }
+
+    // Set by the gameTestServer run config, see build.gradle
+    static int defaultCount() {
+        return Integer.getInteger("simpleplaytime.loadtest.players", 2000);
+    }
+
+    int size() {
+        return profiles.length;
+    }
+
+    UUID id(int index) {
+        return profiles[index].getId();
+    }
+
+    String name(int index) {
+        return profiles[index].getName();
+    }
+
+    // Null while the player is offline
+    ServerPlayer player(int index) {
+        return online[index];
+    }
+
+    void join(int index) {
+        GameProfile profile = profiles[index];
+        CommonListenerCookie cookie = CommonListenerCookie.createInitial(profile, false);
+        ServerPlayer player = new ServerPlayer(server, server.overworld(), profile, cookie.clientInformation());
+        Connection connection = new Connection(PacketFlow.SERVERBOUND);
+        EmbeddedChannel channel = new EmbeddedChannel(DROP_OUTBOUND, connection);
+
+        server.getPlayerList().placeNewPlayer(connection, player, cookie);
+        online[index] = player;
+        channels[index] = channel;
+    }
+
+    void leave(int index) {
+        online[index].connection.onDisconnect(new DisconnectionDetails(Component.literal("Load test")));
+        channels[index].close();
+        online[index] = null;
+        channels[index] = null;
+    }
+
+    // Joins up to max offline players, lowest index first
+    void joinNext(int max) {
+        for (int i = 0; i < profiles.length && max > 0; i++) {
+            if (online[i] == null) {
+                join(i);
+                max--;
+            }
+        }
+    }
+
+    void leaveNext(int max) {
+        for (int i = 0; i < profiles.length && max > 0; i++) {
+            if (online[i] != null) {
+                leave(i);
+                max--;
+            }
+        }
+    }
+
+    void leaveAll() {
+        leaveNext(profiles.length);
+    }
+
+    // Flips count random players: online ones disconnect, offline ones reconnect
+    void churn(SplittableRandom random, int count) {
+        for (int n = 0; n < count; n++) {
+            int i = random.nextInt(profiles.length);
+            if (online[i] != null) {
+                leave(i);
+            } else {
+                join(i);
+            }
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class DropOutbound extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package fr.neocle.simpleplaytime.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Journal appends written by the periodic saveData for the online players
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JournalBenchmark {
+    @Param({"1", "20", "200"})
+    public int onlinePlayers;
+
+    private Path directory;
+    private PlaytimeJournal journal;
+    private List<PlaytimeJournal.Record> records;
+    private long sequence;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("simpleplaytime-bench");
+        journal = new PlaytimeJournal(directory.resolve("playtimes.journal"));
+        records = new ArrayList<>(onlinePlayers);
+        for (int i = 0; i < onlinePlayers; i++) {
+            records.add(PlaytimeJournal.Record.setPlaytime(0L, UUID.randomUUID(), 0L, 0L));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        journal.truncate();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.deleteIfExists(directory.resolve("playtimes.journal"));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void appendSave() throws IOException {
+        for (PlaytimeJournal.Record record : records) {
+            record.seq = ++sequence;
+            record.playtime += 60_000L;
+        }
+        journal.append(records);
+    }
+}
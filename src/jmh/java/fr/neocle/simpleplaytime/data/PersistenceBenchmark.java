@@ -0,0 +1,93 @@
+package fr.neocle.simpleplaytime.data;
+
+import fr.neocle.simpleplaytime.config.PlaytimeConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Shard writes and loads of the file store, the work behind saveData compactions and loadData
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistenceBenchmark {
+    private static final int DIRTY_SHARDS = 8;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"JSON", "BINARY"})
+    public PlaytimeConfig.StorageFormat format;
+
+    private Path directory;
+    private PlayerTable table;
+    private FilePlaytimeStore store;
+    private BitSet allShards;
+    private BitSet someShards;
+    private long sequence;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("simpleplaytime-bench");
+        SplittableRandom random = new SplittableRandom(42);
+        table = new PlayerTable(size);
+        for (int i = 0; i < size; i++) {
+            PlayerRecord record = table.getOrCreate(random.nextLong(), random.nextLong());
+            record.playtime = random.nextLong(1000L * 60 * 60 * 1000);
+            record.name = "Player" + i;
+            for (int reward = 0; reward < 8; reward++) {
+                if (random.nextBoolean()) {
+                    record.addReward(reward);
+                }
+            }
+        }
+
+        allShards = new BitSet(PlayerTable.SHARD_COUNT);
+        allShards.set(0, PlayerTable.SHARD_COUNT);
+        someShards = new BitSet(PlayerTable.SHARD_COUNT);
+        for (int i = 0; i < DIRTY_SHARDS; i++) {
+            someShards.set(i * (PlayerTable.SHARD_COUNT / DIRTY_SHARDS));
+        }
+
+        store = new FilePlaytimeStore(directory, format);
+        store.writeShards(++sequence, table.snapshot(allShards), new BitSet());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void saveAllShards() throws IOException {
+        store.writeShards(++sequence, table.snapshot(allShards), new BitSet());
+    }
+
+    @Benchmark
+    public void saveDirtyShards() throws IOException {
+        store.writeShards(++sequence, table.snapshot(someShards), new BitSet());
+    }
+
+    @Benchmark
+    public PlayerTable load() throws IOException {
+        PlayerTable loaded = new PlayerTable();
+        FilePlaytimeStore reader = new FilePlaytimeStore(directory, format);
+        try {
+            reader.load(loaded, new BitSet(PlayerTable.SHARD_COUNT));
+        } finally {
+            reader.close();
+        }
+        return loaded;
+    }
+}
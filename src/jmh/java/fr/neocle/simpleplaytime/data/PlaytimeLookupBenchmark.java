@@ -0,0 +1,92 @@
+package fr.neocle.simpleplaytime.data;
+
+import fr.neocle.simpleplaytime.api.PlaytimeAPI;
+import net.neoforged.fml.loading.FMLPaths;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Table lookup plus session arithmetic behind getPlaytime, and the API's getFormattedPlaytime read of the
+// manager's session cache for the online players
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaytimeLookupBenchmark {
+    private static final int LOOKUP_KEYS = 4096;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private PlayerTable table;
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private UUID[] onlineIds;
+    private long now;
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        table = new PlayerTable(size);
+        mostSigBits = new long[LOOKUP_KEYS];
+        leastSigBits = new long[LOOKUP_KEYS];
+        now = System.currentTimeMillis();
+
+        // The manager resolves its config folder through FML, which a plain JVM has to point somewhere first
+        FMLPaths.loadAbsolutePaths(Files.createTempDirectory("playtime-benchmark"));
+        SessionCache sessions = PlaytimeManager.getInstance().getSessionCache();
+        sessions.clear();
+        List<UUID> online = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            PlayerRecord record = table.getOrCreate(random.nextLong(), random.nextLong());
+            record.playtime = random.nextLong(1000L * 60 * 60 * 1000);
+            if (random.nextInt(10) == 0) {
+                record.sessionStart = now - random.nextLong(1000L * 60 * 60);
+                sessions.start(record, record.sessionStart);
+                online.add(record.getId());
+            }
+            if (i < LOOKUP_KEYS) {
+                mostSigBits[i] = record.mostSigBits;
+                leastSigBits[i] = record.leastSigBits;
+            }
+        }
+
+        onlineIds = new UUID[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            onlineIds[i] = online.get(i % online.size());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        PlaytimeManager.getInstance().getSessionCache().clear();
+    }
+
+    @Benchmark
+    public long getPlaytime() {
+        return nextRecord().playtimeAt(now);
+    }
+
+    @Benchmark
+    public String getFormattedPlaytime() {
+        return PlaytimeAPI.get().getFormattedPlaytime(onlineIds[cursor++ & (LOOKUP_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public PlayerRecord getMissing() {
+        int i = cursor++ & (LOOKUP_KEYS - 1);
+        return table.get(~mostSigBits[i], leastSigBits[i]);
+    }
+
+    private PlayerRecord nextRecord() {
+        int i = cursor++ & (LOOKUP_KEYS - 1);
+        return table.get(mostSigBits[i], leastSigBits[i]);
+    }
+}
@@ -0,0 +1,70 @@
+package fr.neocle.simpleplaytime.data;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Reward eligibility pass run by checkAndGiveRewards for every online player
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RewardCheckBenchmark {
+    private static final long MILLIS_PER_HOUR = 1000L * 60 * 60;
+    private static final long AFK_MILLIS = 300_000L;
+
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    @Param({"4", "32", "128"})
+    public int tiers;
+
+    private RewardSchedule schedule;
+    private PlayerRecord[] records;
+    private long now;
+    private final List<RewardSchedule.Reward> due = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        List<String> configs = new ArrayList<>();
+        for (int i = 0; i < tiers; i++) {
+            configs.add((i % 2 == 0 ? "" : "active:") + (i + 1) + ":command:say reward " + i);
+        }
+        List<RewardSchedule.Definition> definitions = RewardSchedule.parse(configs);
+        schedule = RewardSchedule.compile(definitions, RewardSchedule.legacySlots(definitions));
+
+        SplittableRandom random = new SplittableRandom(42);
+        now = System.currentTimeMillis();
+        PlayerTable table = new PlayerTable(players);
+        records = new PlayerRecord[players];
+        for (int i = 0; i < players; i++) {
+            PlayerRecord record = table.getOrCreate(random.nextLong(), random.nextLong());
+            record.playtime = random.nextLong((tiers + 1) * MILLIS_PER_HOUR);
+            record.activeTime = record.playtime * 3 / 4;
+            // Online for up to an hour, a few of them AFK
+            record.sessionStart = now - random.nextLong(MILLIS_PER_HOUR) - 1;
+            record.lastActivity = random.nextInt(10) == 0 ? record.sessionStart : now - random.nextLong(AFK_MILLIS);
+            // Most reached tiers were already granted, a few are still due
+            for (RewardSchedule.Reward reward : schedule.getRewards()) {
+                if (reward.requiredMillis() <= record.playtime && random.nextInt(10) != 0) {
+                    record.addReward(reward.slot());
+                }
+            }
+            records[i] = record;
+        }
+    }
+
+    @Benchmark
+    public void checkAllPlayers(Blackhole blackhole) {
+        for (PlayerRecord record : records) {
+            due.clear();
+            RewardSchedule.Progress progress = record.progressAt(now, AFK_MILLIS);
+            schedule.collectDue(progress, record::hasReward, due);
+            blackhole.consume(due.size());
+            blackhole.consume(schedule.nextDueIn(progress, record::hasReward));
+        }
+    }
+}
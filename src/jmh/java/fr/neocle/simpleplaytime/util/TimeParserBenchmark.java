@@ -0,0 +1,18 @@
+package fr.neocle.simpleplaytime.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeParserBenchmark {
+    @Param({"30m", "1d12h", "1y2M3w4d5h6m7s"})
+    public String input;
+
+    @Benchmark
+    public long parseTimeString() {
+        return TimeParser.parseTimeString(input);
+    }
+}
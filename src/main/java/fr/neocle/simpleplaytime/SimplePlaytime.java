@@ -6,16 +6,24 @@ import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.ModContainer;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.config.ModConfig;
+import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.neoforge.common.NeoForge;
+import net.neoforged.neoforge.event.CommandEvent;
 import net.neoforged.neoforge.event.RegisterCommandsEvent;
+import net.neoforged.neoforge.event.ServerChatEvent;
 import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.entity.player.PlayerInteractEvent;
 import net.neoforged.neoforge.event.server.ServerStartingEvent;
 import net.neoforged.neoforge.event.server.ServerStoppingEvent;
 import fr.neocle.simpleplaytime.config.PlaytimeConfig;
 import fr.neocle.simpleplaytime.data.PlaytimeManager;
+import fr.neocle.simpleplaytime.commands.DebugCommand;
+import fr.neocle.simpleplaytime.commands.ImportCommand;
 import fr.neocle.simpleplaytime.commands.PlaytimeCommand;
+import fr.neocle.simpleplaytime.commands.RewardRetryCommand;
 import fr.neocle.simpleplaytime.commands.SetPlaytimeCommand;
 import fr.neocle.simpleplaytime.integration.LuckPermsIntegration;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
 import net.neoforged.neoforge.event.tick.ServerTickEvent;
 
 @Mod(SimplePlaytime.MOD_ID)
@@ -26,37 +34,60 @@ public class SimplePlaytime {
 
     public SimplePlaytime(IEventBus modEventBus, ModContainer modContainer) {
         modContainer.registerConfig(ModConfig.Type.COMMON, PlaytimeConfig.SPEC);
+        modEventBus.addListener(this::onConfigReloading);
 
         NeoForge.EVENT_BUS.addListener(this::onServerTick);
         NeoForge.EVENT_BUS.addListener(this::onServerStarting);
         NeoForge.EVENT_BUS.addListener(this::onServerStopping);
         NeoForge.EVENT_BUS.addListener(this::onPlayerLogin);
         NeoForge.EVENT_BUS.addListener(this::onPlayerLogout);
+        NeoForge.EVENT_BUS.addListener(this::onPlayerChangedDimension);
         NeoForge.EVENT_BUS.addListener(this::onRegisterCommands);
+        NeoForge.EVENT_BUS.addListener(this::onServerChat);
+        NeoForge.EVENT_BUS.addListener(this::onCommand);
+        NeoForge.EVENT_BUS.addListener(PlayerInteractEvent.RightClickBlock.class, this::onPlayerInteract);
+        NeoForge.EVENT_BUS.addListener(PlayerInteractEvent.LeftClickBlock.class, this::onPlayerInteract);
+        NeoForge.EVENT_BUS.addListener(PlayerInteractEvent.RightClickItem.class, this::onPlayerInteract);
+        NeoForge.EVENT_BUS.addListener(PlayerInteractEvent.EntityInteract.class, this::onPlayerInteract);
     }
 
     public void onServerTick(ServerTickEvent.Post event) {
+        long start = System.nanoTime();
         MinecraftServer server = event.getServer();
 
-        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
-            PlaytimeManager.getInstance().checkAndGiveRewards(player);
-        }
+        PlaytimeManager.getInstance().processDueRewards(server);
+        PlaytimeManager.getInstance().dispatchRewardCommands(server);
+        PlaytimeManager.getInstance().syncNetwork(server);
 
         tickCounter++;
 
+        if (tickCounter % 20 == 0) {
+            PlaytimeManager.getInstance().sampleActivity(server);
+        }
+
         if (tickCounter >= 1200) {
             PlaytimeManager.getInstance().saveData();
             tickCounter = 0;
         }
+
+        PlaytimeMetrics.TICK.record(System.nanoTime() - start);
+    }
+
+    private void onConfigReloading(ModConfigEvent.Reloading event) {
+        if (event.getConfig().getSpec() == PlaytimeConfig.SPEC) {
+            PlaytimeManager.getInstance().invalidateRewardSchedule();
+        }
     }
 
     private void onServerStarting(ServerStartingEvent event) {
         LuckPermsIntegration.initialize();
+        PlaytimeMetrics.registerMBean();
         PlaytimeManager.getInstance().loadData();
     }
 
     private void onServerStopping(ServerStoppingEvent event) {
-        PlaytimeManager.getInstance().saveData();
+        PlaytimeManager.getInstance().shutdown();
+        PlaytimeMetrics.unregisterMBean();
     }
 
     private void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
@@ -67,8 +98,34 @@ public class SimplePlaytime {
         PlaytimeManager.getInstance().onPlayerLogout((ServerPlayer) event.getEntity());
     }
 
+    private void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            PlaytimeManager.getInstance().onPlayerChangedDimension(player, event.getTo());
+        }
+    }
+
+    private void onServerChat(ServerChatEvent event) {
+        PlaytimeManager.getInstance().recordActivity(event.getPlayer());
+    }
+
+    private void onCommand(CommandEvent event) {
+        ServerPlayer player = event.getParseResults().getContext().getSource().getPlayer();
+        if (player != null) {
+            PlaytimeManager.getInstance().recordActivity(player);
+        }
+    }
+
+    private void onPlayerInteract(PlayerInteractEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            PlaytimeManager.getInstance().recordActivity(player);
+        }
+    }
+
     private void onRegisterCommands(RegisterCommandsEvent event) {
         PlaytimeCommand.register(event.getDispatcher());
         SetPlaytimeCommand.register(event.getDispatcher());
+        RewardRetryCommand.register(event.getDispatcher());
+        DebugCommand.register(event.getDispatcher());
+        ImportCommand.register(event.getDispatcher());
     }
 }
\ No newline at end of file
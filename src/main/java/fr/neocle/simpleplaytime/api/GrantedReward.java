@@ -0,0 +1,7 @@
+package fr.neocle.simpleplaytime.api;
+
+import java.util.UUID;
+
+// rewardId is stable across config edits; type is group, permission or command and value what it grants
+public record GrantedReward(UUID playerId, String rewardId, String type, String value, long requiredMillis) {
+}
@@ -0,0 +1,68 @@
+package fr.neocle.simpleplaytime.api;
+
+import fr.neocle.simpleplaytime.data.PlaytimeManager;
+import fr.neocle.simpleplaytime.data.SessionCache;
+import net.minecraft.server.MinecraftServer;
+import net.neoforged.neoforge.server.ServerLifecycleHooks;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Entry point for scoreboards, tab lists, placeholders and other mods. The online-player reads are lock-free
+// and safe from any thread at any rate; formatted strings are rebuilt at most once per second per player.
+public final class PlaytimeAPI {
+    private static final PlaytimeAPI INSTANCE = new PlaytimeAPI();
+
+    private PlaytimeAPI() {
+    }
+
+    public static PlaytimeAPI get() {
+        return INSTANCE;
+    }
+
+    public boolean isOnline(UUID playerId) {
+        return sessions().isOnline(playerId);
+    }
+
+    // Total playtime in milliseconds including the current session, 0 if the player is not online
+    public long getPlaytime(UUID playerId) {
+        return Math.max(0L, sessions().getPlaytime(playerId, System.currentTimeMillis()));
+    }
+
+    // Milliseconds since the player logged in, 0 if the player is not online
+    public long getSessionTime(UUID playerId) {
+        return Math.max(0L, sessions().getSessionTime(playerId, System.currentTimeMillis()));
+    }
+
+    // "12h 3m 4s" style total playtime, null if the player is not online
+    public String getFormattedPlaytime(UUID playerId) {
+        return sessions().getFormattedPlaytime(playerId, System.currentTimeMillis());
+    }
+
+    // Works for offline players too, reading them from storage if needed; completes on the server thread
+    public CompletableFuture<Long> queryPlaytime(UUID playerId) {
+        long cached = sessions().getPlaytime(playerId, System.currentTimeMillis());
+        if (cached >= 0L) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server == null) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        return CompletableFuture.supplyAsync(() -> PlaytimeManager.getInstance().queryPlaytime(server, playerId), server)
+                .thenCompose(playtime -> playtime);
+    }
+
+    public void addRewardListener(RewardListener listener) {
+        PlaytimeManager.getInstance().addRewardListener(listener);
+    }
+
+    public void removeRewardListener(RewardListener listener) {
+        PlaytimeManager.getInstance().removeRewardListener(listener);
+    }
+
+    private static SessionCache sessions() {
+        return PlaytimeManager.getInstance().getSessionCache();
+    }
+}
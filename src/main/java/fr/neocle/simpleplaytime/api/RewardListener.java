@@ -0,0 +1,7 @@
+package fr.neocle.simpleplaytime.api;
+
+// Called on the server thread after a reward has been granted and recorded
+@FunctionalInterface
+public interface RewardListener {
+    void onRewardGranted(GrantedReward reward);
+}
@@ -0,0 +1,76 @@
+package fr.neocle.simpleplaytime.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import fr.neocle.simpleplaytime.util.LatencyHistogram;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
+import fr.neocle.simpleplaytime.util.TimeFormatter;
+
+public class DebugCommand {
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("playtime")
+                .then(Commands.literal("debug")
+                        .requires(source -> source.hasPermission(2))
+                        .executes(DebugCommand::showStats)
+                        .then(Commands.literal("reset")
+                                .executes(DebugCommand::resetStats)))
+        );
+    }
+
+    private static int showStats(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+
+        send(source, "Tick: " + describe(PlaytimeMetrics.TICK) + " over " + PlaytimeMetrics.TICK.count() + " ticks");
+        send(source, "Rewards: " + PlaytimeMetrics.getRewardChecks() + " checks, "
+                + PlaytimeMetrics.getRewardsFired() + " fired");
+        send(source, "Journal writes: " + PlaytimeMetrics.JOURNAL_WRITE.count() + ", "
+                + describe(PlaytimeMetrics.JOURNAL_WRITE));
+        send(source, "Compactions: " + PlaytimeMetrics.COMPACTION.count() + ", "
+                + describe(PlaytimeMetrics.COMPACTION));
+        send(source, "Loads: " + PlaytimeMetrics.LOAD.count() + ", " + describe(PlaytimeMetrics.LOAD));
+        send(source, "Bytes written: " + formatBytes(PlaytimeMetrics.getBytesWritten()));
+        send(source, "LuckPerms: " + PlaytimeMetrics.LUCKPERMS.count() + " calls, "
+                + PlaytimeMetrics.getLuckPermsFailures() + " failed, " + describe(PlaytimeMetrics.LUCKPERMS));
+        send(source, "Reward commands: " + PlaytimeMetrics.REWARD_COMMAND.count() + " run, "
+                + describe(PlaytimeMetrics.REWARD_COMMAND));
+        send(source, "Reward command queue: " + PlaytimeMetrics.getRewardCommandQueueDepth() + " waiting (peak "
+                + PlaytimeMetrics.getRewardCommandQueuePeak() + "), waited " + describe(PlaytimeMetrics.REWARD_COMMAND_WAIT));
+        send(source, "Players: " + PlaytimeMetrics.getTrackedPlayers() + " tracked, "
+                + PlaytimeMetrics.getOnlinePlayers() + " online, " + PlaytimeMetrics.getEvictedPlayers() + " evicted");
+
+        return 1;
+    }
+
+    private static int resetStats(CommandContext<CommandSourceStack> context) {
+        PlaytimeMetrics.reset();
+        context.getSource().sendSuccess(() -> Component.literal("Playtime metrics reset."), true);
+        return 1;
+    }
+
+    private static void send(CommandSourceStack source, String line) {
+        source.sendSuccess(() -> Component.literal(line), false);
+    }
+
+    private static String describe(LatencyHistogram histogram) {
+        if (histogram.count() == 0L) {
+            return "no samples";
+        }
+        return "p50 " + TimeFormatter.formatNanos(histogram.percentile(0.50))
+                + ", p99 " + TimeFormatter.formatNanos(histogram.percentile(0.99))
+                + ", max " + TimeFormatter.formatNanos(histogram.max());
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + " B";
+        }
+        if (bytes < 1024L * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,56 @@
+package fr.neocle.simpleplaytime.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import fr.neocle.simpleplaytime.data.PlaytimeManager;
+import fr.neocle.simpleplaytime.data.VanillaStatsImporter;
+
+import java.util.Locale;
+
+public class ImportCommand {
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("playtime")
+                .then(Commands.literal("import")
+                        .requires(source -> source.hasPermission(3))
+                        .then(Commands.literal("vanilla")
+                                .executes(context -> importVanilla(context, VanillaStatsImporter.Policy.MAX))
+                                .then(Commands.literal("max")
+                                        .executes(context -> importVanilla(context, VanillaStatsImporter.Policy.MAX)))
+                                .then(Commands.literal("replace")
+                                        .executes(context -> importVanilla(context, VanillaStatsImporter.Policy.REPLACE)))
+                                .then(Commands.literal("add")
+                                        .executes(context -> importVanilla(context, VanillaStatsImporter.Policy.ADD)))))
+        );
+    }
+
+    private static int importVanilla(CommandContext<CommandSourceStack> context, VanillaStatsImporter.Policy policy) {
+        CommandSourceStack source = context.getSource();
+        MinecraftServer server = source.getServer();
+        long start = System.currentTimeMillis();
+
+        source.sendSuccess(() -> Component.literal("Importing vanilla playtime (" +
+                policy.name().toLowerCase(Locale.ROOT) + ")..."), true);
+
+        PlaytimeManager.getInstance().importVanillaStats(server, policy, filesRead -> server.execute(() ->
+                        source.sendSuccess(() -> Component.literal("Read " + filesRead + " stats files..."), false)))
+                .whenComplete((summary, e) -> server.execute(() -> {
+                    if (e != null) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        source.sendFailure(Component.literal("Vanilla import failed: " + cause.getMessage()));
+                        return;
+                    }
+
+                    long elapsed = System.currentTimeMillis() - start;
+                    source.sendSuccess(() -> Component.literal("Imported playtime for " + summary.players() +
+                            " players from " + summary.files() + " stats files in " + elapsed + " ms (" +
+                            summary.changed() + " changed, " + summary.unreadable() + " skipped)."), true);
+                }));
+
+        return 1;
+    }
+}
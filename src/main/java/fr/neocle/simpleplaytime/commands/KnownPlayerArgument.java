@@ -0,0 +1,38 @@
+package fr.neocle.simpleplaytime.commands;
+
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import fr.neocle.simpleplaytime.data.PlaytimeManager;
+
+import java.util.UUID;
+
+public class KnownPlayerArgument {
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final DynamicCommandExceptionType UNKNOWN_PLAYER =
+            new DynamicCommandExceptionType(name -> Component.literal("Unknown player: " + name));
+
+    public static RequiredArgumentBuilder<CommandSourceStack, String> argument(String name) {
+        return Commands.argument(name, StringArgumentType.word())
+                .suggests((context, builder) -> {
+                    for (String playerName : PlaytimeManager.getInstance().completePlayerNames(builder.getRemaining(), MAX_SUGGESTIONS)) {
+                        builder.suggest(playerName);
+                    }
+                    return builder.buildFuture();
+                });
+    }
+
+    public static UUID getPlayerId(CommandContext<CommandSourceStack> context, String name) throws CommandSyntaxException {
+        String playerName = StringArgumentType.getString(context, name);
+        UUID playerId = PlaytimeManager.getInstance().findPlayerId(playerName);
+        if (playerId == null) {
+            throw UNKNOWN_PLAYER.create(playerName);
+        }
+        return playerId;
+    }
+}
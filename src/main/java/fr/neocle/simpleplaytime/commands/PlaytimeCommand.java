@@ -1,23 +1,48 @@
 package fr.neocle.simpleplaytime.commands;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
-import net.minecraft.commands.arguments.EntityArgument;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
+import fr.neocle.simpleplaytime.config.PlaytimeConfig;
+import fr.neocle.simpleplaytime.data.PlaytimeLeaderboard;
 import fr.neocle.simpleplaytime.data.PlaytimeManager;
+import fr.neocle.simpleplaytime.util.TimeFormatter;
+import fr.neocle.simpleplaytime.util.TimeParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class PlaytimeCommand {
+    private static final int PAGE_SIZE = 10;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
 
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
         dispatcher.register(Commands.literal("playtime")
                 .executes(PlaytimeCommand::showOwnPlaytime)
-                .then(Commands.argument("player", EntityArgument.player())
+                .then(Commands.literal("top")
+                        .executes(context -> showTopPlaytimes(context, 1))
+                        .then(Commands.argument("page", IntegerArgumentType.integer(1))
+                                .executes(context -> showTopPlaytimes(context, IntegerArgumentType.getInteger(context, "page")))))
+                .then(Commands.literal("server")
+                        .requires(source -> source.hasPermission(2))
+                        .then(Commands.argument("window", StringArgumentType.word())
+                                .suggests((context, builder) -> builder.suggest("7d").suggest("30d").buildFuture())
+                                .executes(PlaytimeCommand::showServerRecentPlaytime)))
+                // Under its own literal so names can't collide with top, server, import and the like
+                .then(Commands.literal("player")
                         .requires(source -> source.hasPermission(2))
-                        .executes(PlaytimeCommand::showPlayerPlaytime))
+                        .then(KnownPlayerArgument.argument("player")
+                                .executes(PlaytimeCommand::showPlayerPlaytime)
+                                .then(Commands.argument("window", StringArgumentType.word())
+                                        .suggests((context, builder) -> builder.suggest("7d").suggest("30d").buildFuture())
+                                        .executes(PlaytimeCommand::showRecentPlaytime))))
         );
     }
 
@@ -25,19 +50,131 @@ public class PlaytimeCommand {
         CommandSourceStack source = context.getSource();
         ServerPlayer player = source.getPlayerOrException();
 
-        String playtime = PlaytimeManager.getInstance().getFormattedPlaytime(player.getUUID());
+        String playtime = PlaytimeManager.getInstance().getFormattedPlaytime(player.getUUID()) + activeSuffix(player.getUUID());
         source.sendSuccess(() -> Component.literal("Your playtime: " + playtime), false);
+        sendDimensionBreakdown(source, player.getUUID());
 
         return 1;
     }
 
     private static int showPlayerPlaytime(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
         CommandSourceStack source = context.getSource();
-        ServerPlayer targetPlayer = EntityArgument.getPlayer(context, "player");
+        UUID targetId = KnownPlayerArgument.getPlayerId(context, "player");
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+
+        // Evicted players only have their name once the query has read them back
+        manager.queryPlaytime(source.getServer(), targetId).thenAccept(millis -> {
+            String name = manager.getPlayerName(targetId);
+            String playtime = TimeFormatter.formatPlaytime(millis) + activeSuffix(targetId);
+            source.sendSuccess(() -> Component.literal(name + "'s playtime: " + playtime), false);
+            sendDimensionBreakdown(source, targetId);
+        });
+
+        return 1;
+    }
+
+    private static int showRecentPlaytime(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+        CommandSourceStack source = context.getSource();
+        UUID targetId = KnownPlayerArgument.getPlayerId(context, "player");
+        int days = parseWindow(source, StringArgumentType.getString(context, "window"));
+        if (days == 0) {
+            return 0;
+        }
+
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+        manager.queryRecentPlaytime(source.getServer(), targetId, days).thenAccept(millis -> {
+            String name = manager.getPlayerName(targetId);
+            String playtime = TimeFormatter.formatPlaytime(millis);
+            source.sendSuccess(() -> Component.literal(name + "'s playtime over the last " + days + " days: " + playtime), false);
+        });
+
+        return 1;
+    }
+
+    private static int showServerRecentPlaytime(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        int days = parseWindow(source, StringArgumentType.getString(context, "window"));
+        if (days == 0) {
+            return 0;
+        }
+
+        String playtime = TimeFormatter.formatPlaytime(PlaytimeManager.getInstance().getServerRecentPlaytime(days));
+        source.sendSuccess(() -> Component.literal("Playtime on this server over the last " + days + " days: " + playtime), false);
+        return 1;
+    }
+
+    // Whole days within the kept history, or 0 after reporting why not
+    private static int parseWindow(CommandSourceStack source, String window) {
+        int kept = PlaytimeManager.getInstance().getHistoryDays();
+        if (kept == 0) {
+            source.sendFailure(Component.literal("Playtime history is turned off (historyDays = 0)."));
+            return 0;
+        }
+
+        long millis;
+        try {
+            millis = TimeParser.parseTimeString(window);
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal("Invalid time format: " + e.getMessage()));
+            return 0;
+        }
+
+        if (millis <= 0 || millis % MILLIS_PER_DAY != 0 || millis / MILLIS_PER_DAY > kept) {
+            source.sendFailure(Component.literal("The window must be whole days, up to " + kept + "d."));
+            return 0;
+        }
+        return (int) (millis / MILLIS_PER_DAY);
+    }
+
+    private static void sendDimensionBreakdown(CommandSourceStack source, UUID playerId) {
+        for (Map.Entry<String, Long> entry : PlaytimeManager.getInstance().getDimensionTimes(playerId).entrySet()) {
+            String line = "  " + entry.getKey() + ": " + TimeFormatter.formatPlaytime(entry.getValue());
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+    }
+
+    private static String activeSuffix(UUID playerId) {
+        if (PlaytimeConfig.AFK_THRESHOLD_SECONDS.get() <= 0) {
+            return "";
+        }
+        return " (active: " + TimeFormatter.formatPlaytime(PlaytimeManager.getInstance().getActiveTime(playerId)) + ")";
+    }
+
+    private static int showTopPlaytimes(CommandContext<CommandSourceStack> context, int page) {
+        CommandSourceStack source = context.getSource();
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+
+        int offset = (page - 1) * PAGE_SIZE;
+        manager.queryTopPlaytimes(source.getServer(), offset, PAGE_SIZE).whenComplete((top, error) -> source.getServer().execute(() -> {
+            if (error != null) {
+                source.sendFailure(Component.literal("Failed to load the playtime leaderboard."));
+                return;
+            }
+
+            // Counted by the same query as the page, so the two always agree
+            int totalPages = Math.max(1, (top.total() + PAGE_SIZE - 1) / PAGE_SIZE);
+            if (page > totalPages) {
+                source.sendFailure(Component.literal("There are only " + totalPages + " page(s)."));
+                return;
+            }
+
+            List<PlaytimeLeaderboard.Entry> entries = top.entries();
+            source.sendSuccess(() -> Component.literal("Top playtimes (page " + page + "/" + totalPages + "):"), false);
+            for (int i = 0; i < entries.size(); i++) {
+                PlaytimeLeaderboard.Entry entry = entries.get(i);
+                int rank = offset + i + 1;
+                String name = manager.getPlayerName(entry.playerId());
+                String playtime = TimeFormatter.formatPlaytime(entry.playtime());
+                source.sendSuccess(() -> Component.literal("#" + rank + " " + name + " - " + playtime), false);
+            }
 
-        String playtime = PlaytimeManager.getInstance().getFormattedPlaytime(targetPlayer.getUUID());
-        source.sendSuccess(() -> Component.literal(targetPlayer.getGameProfile().getName() + "'s playtime: " + playtime), false);
+            ServerPlayer self = source.getPlayer();
+            if (self != null) {
+                int rank = manager.getRank(self.getUUID());
+                source.sendSuccess(() -> Component.literal("Your rank: #" + rank), false);
+            }
+        }));
 
         return 1;
     }
-}
\ No newline at end of file
+}
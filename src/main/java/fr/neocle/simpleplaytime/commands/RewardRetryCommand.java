@@ -0,0 +1,62 @@
+package fr.neocle.simpleplaytime.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import fr.neocle.simpleplaytime.data.PlaytimeManager;
+import fr.neocle.simpleplaytime.data.RewardRetryQueue;
+import fr.neocle.simpleplaytime.data.RewardSchedule;
+
+import java.util.List;
+
+public class RewardRetryCommand {
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("playtime")
+                .then(Commands.literal("retries")
+                        .requires(source -> source.hasPermission(2))
+                        .executes(RewardRetryCommand::listFailedRewards)
+                        .then(Commands.literal("flush")
+                                .executes(RewardRetryCommand::flushFailedRewards)))
+        );
+    }
+
+    private static int listFailedRewards(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+        List<RewardRetryQueue.Entry> entries = manager.getFailedRewards();
+
+        if (entries.isEmpty()) {
+            source.sendSuccess(() -> Component.literal("No failed rewards."), false);
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.literal(entries.size() + " failed reward(s):"), false);
+        long now = System.currentTimeMillis();
+        for (RewardRetryQueue.Entry entry : entries) {
+            String playerName = manager.getPlayerName(entry.playerId());
+
+            RewardSchedule.Reward reward = manager.getReward(entry.rewardSlot());
+            String rewardName = reward != null ? reward.type() + ":" + reward.value() : "#" + entry.rewardSlot();
+
+            String status = entry.exhausted()
+                    ? "stuck"
+                    : "retry in " + Math.max(0, (entry.nextAttemptAt() - now) / 1000) + "s";
+
+            source.sendSuccess(() -> Component.literal(" - " + playerName + ": " + rewardName +
+                    " (" + entry.attempts() + " attempts, " + status + ")"), false);
+        }
+
+        return entries.size();
+    }
+
+    private static int flushFailedRewards(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        int flushed = PlaytimeManager.getInstance().flushFailedRewards();
+
+        source.sendSuccess(() -> Component.literal("Flushed " + flushed + " failed reward(s), they will be retried."), true);
+        return flushed;
+    }
+}
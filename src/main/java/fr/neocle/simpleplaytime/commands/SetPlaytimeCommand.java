@@ -6,12 +6,13 @@ import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
-import net.minecraft.commands.arguments.EntityArgument;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 import fr.neocle.simpleplaytime.data.PlaytimeManager;
 import fr.neocle.simpleplaytime.util.TimeParser;
 
+import java.util.UUID;
+
 public class SetPlaytimeCommand {
 
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
@@ -19,7 +20,7 @@ public class SetPlaytimeCommand {
                 .requires(source ->
                         source.hasPermission(2)
                 )
-                .then(Commands.argument("player", EntityArgument.player())
+                .then(KnownPlayerArgument.argument("player")
                         .then(Commands.argument("time", StringArgumentType.string())
                                 .executes(SetPlaytimeCommand::setPlaytime)
                         )
@@ -29,7 +30,7 @@ public class SetPlaytimeCommand {
 
     private static int setPlaytime(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
         CommandSourceStack source = context.getSource();
-        ServerPlayer targetPlayer = EntityArgument.getPlayer(context, "player");
+        UUID targetId = KnownPlayerArgument.getPlayerId(context, "player");
         String timeString = StringArgumentType.getString(context, "time");
 
         long millis;
@@ -40,17 +41,28 @@ public class SetPlaytimeCommand {
             return 0;
         }
 
-        PlaytimeManager.getInstance().setPlaytimeMillis(targetPlayer.getUUID(), millis);
+        PlaytimeManager manager = PlaytimeManager.getInstance();
+        manager.setPlaytimeMillis(source.getServer(), targetId, millis).thenAccept(updated -> {
+            if (!updated) {
+                String typedName = StringArgumentType.getString(context, "player");
+                source.sendFailure(Component.literal("Failed to load " + typedName + "'s playtime, nothing was changed."));
+                return;
+            }
 
-        source.sendSuccess(
-                () -> Component.literal("Set " + targetPlayer.getGameProfile().getName() +
-                        "'s playtime to " + timeString + "."),
-                true
-        );
+            String name = manager.getPlayerName(targetId);
+            source.sendSuccess(
+                    () -> Component.literal("Set " + name +
+                            "'s playtime to " + timeString + "."),
+                    true
+            );
 
-        targetPlayer.sendSystemMessage(
-                Component.literal("Your playtime has been set to " + timeString + ".")
-        );
+            ServerPlayer targetPlayer = source.getServer().getPlayerList().getPlayer(targetId);
+            if (targetPlayer != null) {
+                targetPlayer.sendSystemMessage(
+                        Component.literal("Your playtime has been set to " + timeString + ".")
+                );
+            }
+        });
 
         return 1;
     }
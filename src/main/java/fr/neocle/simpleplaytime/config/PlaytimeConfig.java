@@ -8,6 +8,32 @@ public class PlaytimeConfig {
 
     public static final ModConfigSpec.ConfigValue<Boolean> ENABLE_REWARDS;
     public static final ModConfigSpec.ConfigValue<List<? extends String>> REWARD_CONFIGS;
+    public static final ModConfigSpec.IntValue REWARD_RETRY_MAX_ATTEMPTS;
+    public static final ModConfigSpec.IntValue REWARD_RETRY_BASE_SECONDS;
+    public static final ModConfigSpec.IntValue REWARD_COMMANDS_PER_TICK;
+    public static final ModConfigSpec.IntValue REWARD_COMMAND_BUDGET_MICROS;
+    public static final ModConfigSpec.IntValue AFK_THRESHOLD_SECONDS;
+    public static final ModConfigSpec.IntValue HISTORY_DAYS;
+    public static final ModConfigSpec.EnumValue<StorageBackend> STORAGE_BACKEND;
+    public static final ModConfigSpec.EnumValue<StorageFormat> STORAGE_FORMAT;
+    public static final ModConfigSpec.IntValue MAX_CACHED_PLAYERS;
+    public static final ModConfigSpec.ConfigValue<String> JDBC_URL;
+    public static final ModConfigSpec.ConfigValue<String> JDBC_USER;
+    public static final ModConfigSpec.ConfigValue<String> JDBC_PASSWORD;
+    public static final ModConfigSpec.ConfigValue<Boolean> NETWORK_MODE;
+    public static final ModConfigSpec.ConfigValue<String> NODE_ID;
+    public static final ModConfigSpec.IntValue NETWORK_FLUSH_SECONDS;
+    public static final ModConfigSpec.IntValue NETWORK_CACHE_SECONDS;
+
+    public enum StorageBackend {
+        FILE,
+        SQL
+    }
+
+    public enum StorageFormat {
+        JSON,
+        BINARY
+    }
 
     static {
         BUILDER.push("rewards");
@@ -17,14 +43,21 @@ public class PlaytimeConfig {
                 .define("enableRewards", true);
 
         REWARD_CONFIGS = BUILDER
-                .comment("Reward configurations in format: 'hours:type:value'",
+                .comment("Reward configurations in format: 'hours:type:value', 'active:hours:type:value'",
+                        "or 'dimension:<dimension>:hours:type:value'",
                         "Types: 'group' for adding to group, 'permission' for adding permission, 'command' for custom command",
+                        "The 'active:' prefix counts active time (see afkThresholdSeconds) instead of total playtime",
+                        "The 'dimension:' prefix counts only the time spent in that dimension (e.g. minecraft:the_nether)",
                         "Examples:",
                         "  '24:group:apprentice' - adds player to 'apprentice' group after 24 hours",
                         "  '168:group:architect' - adds player to 'architect' group after 168 hours (1 week)",
                         "  '1:permission:example.reward' - gives permission after 1 hour",
                         "  '48:command:say %player% is awesome!' - executes custom command after 48 hours",
-                        " You can put multiple rewards for the same hour, they will all be processed.")
+                        "  'active:100:group:veteran' - adds player to 'veteran' group after 100 hours of active play",
+                        "  'dimension:minecraft:the_nether:10:permission:example.nether' - after 10 hours in the Nether",
+                        " You can put multiple rewards for the same hour, they will all be processed.",
+                        " Rewards are tracked by type and value, so reordering entries or changing their hours",
+                        " does not re-grant them; changing the type or value makes it a new reward.")
                 .defineList("rewardConfigs",
                         List.of(
                                 "1:command:say %player% has played for 1 hour!",
@@ -34,6 +67,93 @@ public class PlaytimeConfig {
                         ),
                         obj -> obj instanceof String);
 
+        REWARD_RETRY_MAX_ATTEMPTS = BUILDER
+                .comment("How many times a failed reward is attempted before it is left for '/playtime retries flush'")
+                .defineInRange("rewardRetryMaxAttempts", 5, 1, 100);
+
+        REWARD_RETRY_BASE_SECONDS = BUILDER
+                .comment("Delay before the first retry of a failed reward, doubled after each failure (capped at 1 hour)")
+                .defineInRange("rewardRetryBaseSeconds", 30, 1, 3600);
+
+        REWARD_COMMANDS_PER_TICK = BUILDER
+                .comment("Most reward commands run in one server tick; the rest wait in a queue for the next ticks",
+                        "A player's reward commands always run in the order the rewards were reached")
+                .defineInRange("rewardCommandsPerTick", 10, 1, 1000);
+
+        REWARD_COMMAND_BUDGET_MICROS = BUILDER
+                .comment("Time in microseconds reward commands may take per tick before the rest wait for the next tick",
+                        "At least one command runs every tick. 0 limits them by rewardCommandsPerTick only")
+                .defineInRange("rewardCommandBudgetMicros", 5000, 0, 1000000);
+
+        BUILDER.pop();
+
+        BUILDER.push("activity");
+
+        AFK_THRESHOLD_SECONDS = BUILDER
+                .comment("Players who do nothing (move, chat, interact, run commands) for longer than this are AFK",
+                        "and stop accumulating active time; total playtime keeps counting. 0 counts all playtime as active")
+                .defineInRange("afkThresholdSeconds", 300, 0, 86400);
+
+        HISTORY_DAYS = BUILDER
+                .comment("How many days of daily playtime are kept per player, for '/playtime player <name> 7d' and the like",
+                        "Applied on server start, 0 turns the history off and drops what was kept")
+                .defineInRange("historyDays", 30, 0, 365);
+
+        BUILDER.pop();
+
+        BUILDER.push("storage");
+
+        STORAGE_BACKEND = BUILDER
+                .comment("Where playtime data is stored, applied on server start",
+                        "FILE keeps everything in the config folder, SQL uses the database below",
+                        "Switching to SQL imports the existing files into an empty database")
+                .defineEnum("storageBackend", StorageBackend.FILE);
+
+        STORAGE_FORMAT = BUILDER
+                .comment("Format of the playtime data files, applied on server start",
+                        "Players are split across playtimes/<xx>.json (JSON) or playtimes/<xx>.bin (BINARY), one file per",
+                        "first UUID byte, and recent changes go to playtimes.journal until the next compaction",
+                        "Back up the playtimes folder together with playtimes.journal",
+                        "Switching formats migrates the existing files on the next start")
+                .defineEnum("storageFormat", StorageFormat.JSON);
+
+        MAX_CACHED_PLAYERS = BUILDER
+                .comment("How many offline player records are kept in memory, the least recently seen beyond that are",
+                        "evicted and read back from storage when needed. Online players are always kept. 0 keeps everyone",
+                        "This shrinks the heap per player, it does not cap it: the leaderboard, the name index and the set",
+                        "of evicted ids keep a small entry for every player")
+                .defineInRange("maxCachedPlayers", 10000, 0, Integer.MAX_VALUE);
+
+        JDBC_URL = BUILDER
+                .comment("JDBC URL of the SQL store, leave empty for an embedded H2 database in the config folder")
+                .define("jdbcUrl", "");
+
+        JDBC_USER = BUILDER
+                .comment("User for the SQL store")
+                .define("jdbcUser", "sa");
+
+        JDBC_PASSWORD = BUILDER
+                .comment("Password for the SQL store")
+                .define("jdbcPassword", "");
+
+        NETWORK_MODE = BUILDER
+                .comment("Share the SQL store with other servers behind the same proxy, applied on server start",
+                        "Requires storageBackend = SQL and a jdbcUrl every server can reach (e.g. jdbc:h2:tcp://host/playtimes)",
+                        "Playtime is added as session deltas and each reward is claimed so it is granted on one server only")
+                .define("networkMode", false);
+
+        NODE_ID = BUILDER
+                .comment("Name of this server in network mode, recorded with reward claims. Leave empty for a random id")
+                .define("nodeId", "");
+
+        NETWORK_FLUSH_SECONDS = BUILDER
+                .comment("How often online players' session time is flushed to the shared store in network mode")
+                .defineInRange("networkFlushSeconds", 15, 1, 600);
+
+        NETWORK_CACHE_SECONDS = BUILDER
+                .comment("How long playtime totals read from the shared store are cached in network mode")
+                .defineInRange("networkCacheSeconds", 5, 1, 300);
+
         BUILDER.pop();
     }
 
@@ -0,0 +1,227 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class BinaryPlaytimeCodec {
+    private static final int MAGIC = 0x53505442;
+    private static final int VERSION = 5;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int CHECKSUM_SIZE = 4;
+
+    public static byte[] encode(long journalSequence, PlayerTable.Snapshot snapshot) {
+        Output out = new Output(HEADER_SIZE + snapshot.size() * 28 + CHECKSUM_SIZE);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(journalSequence);
+        out.writeInt(snapshot.size());
+
+        // Dimension times refer to this table rather than repeating the keys for every player
+        List<String> dimensions = DimensionIds.keys();
+        out.writeVarLong(dimensions.size());
+        for (String dimension : dimensions) {
+            out.writeString(dimension);
+        }
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            out.writeLong(snapshot.mostSigBits()[i]);
+            out.writeLong(snapshot.leastSigBits()[i]);
+            out.writeVarLong(snapshot.playtimes()[i]);
+            out.writeVarLong(snapshot.activeTimes()[i]);
+            out.writeString(snapshot.names()[i]);
+
+            long[] words = snapshot.rewards()[i];
+            out.writeVarLong(words.length);
+            for (long word : words) {
+                out.writeVarLong(word);
+            }
+
+            int[] history = snapshot.histories()[i];
+            if (history == null) {
+                out.writeVarLong(0);
+            } else {
+                out.writeVarLong(history.length);
+                out.writeVarLong(snapshot.historyEnds()[i]);
+                for (int played : history) {
+                    out.writeVarLong(played);
+                }
+            }
+
+            long[] dimensionTimes = snapshot.dimensionTimes()[i];
+            out.writeVarLong(Arrays.stream(dimensionTimes).filter(millis -> millis != 0L).count());
+            for (int dimension = 0; dimension < dimensionTimes.length; dimension++) {
+                if (dimensionTimes[dimension] != 0L) {
+                    out.writeVarLong(dimension);
+                    out.writeVarLong(dimensionTimes[dimension]);
+                }
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(out.buffer(), 0, out.size());
+        out.writeInt((int) crc.getValue());
+        return out.toByteArray();
+    }
+
+    public static long decode(Path file, PlayerTable table) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKSUM_SIZE) {
+                throw new IOException("Binary playtime file is truncated: " + file);
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            return decode(mapped, table);
+        }
+    }
+
+    public static long decode(ByteBuffer buffer, PlayerTable table) throws IOException {
+        int payloadSize = buffer.limit() - CHECKSUM_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(payloadSize));
+        if ((int) crc.getValue() != buffer.getInt(payloadSize)) {
+            throw new IOException("Binary playtime file checksum mismatch");
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary playtime file");
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported binary playtime file version: " + version);
+        }
+
+        long journalSequence = buffer.getLong();
+        int count = buffer.getInt();
+        table.ensureCapacity(table.size() + count);
+
+        int[] dimensions = new int[0];
+        if (version >= 5) {
+            dimensions = new int[(int) readVarLong(buffer)];
+            for (int d = 0; d < dimensions.length; d++) {
+                dimensions[d] = DimensionIds.intern(readString(buffer));
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            PlayerRecord record = table.getOrCreate(buffer.getLong(), buffer.getLong());
+            record.playtime = readVarLong(buffer);
+            if (version >= 3) {
+                record.activeTime = readVarLong(buffer);
+            }
+            if (version >= 2) {
+                record.name = readString(buffer);
+            }
+
+            int wordCount = (int) readVarLong(buffer);
+            long[] words = new long[wordCount];
+            for (int w = 0; w < wordCount; w++) {
+                words[w] = readVarLong(buffer);
+            }
+            record.setRewardWords(words);
+
+            if (version >= 4) {
+                int days = (int) readVarLong(buffer);
+                if (days > 0) {
+                    int lastDay = (int) readVarLong(buffer);
+                    int[] played = new int[days];
+                    for (int d = 0; d < days; d++) {
+                        played[d] = (int) readVarLong(buffer);
+                    }
+                    record.restoreHistory(lastDay, played);
+                }
+            }
+
+            if (version >= 5) {
+                int pairs = (int) readVarLong(buffer);
+                for (int p = 0; p < pairs; p++) {
+                    int dimension = (int) readVarLong(buffer);
+                    if (dimension >= dimensions.length) {
+                        throw new IOException("Binary playtime file refers to unknown dimension " + dimension);
+                    }
+                    record.addDimensionTime(dimensions[dimension], readVarLong(buffer));
+                }
+            }
+        }
+
+        if (buffer.position() != payloadSize) {
+            throw new IOException("Binary playtime file has trailing data");
+        }
+        return journalSequence;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = (int) readVarLong(buffer);
+        if (length == 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary playtime file");
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+        Output(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+}
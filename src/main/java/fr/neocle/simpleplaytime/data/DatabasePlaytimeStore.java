@@ -0,0 +1,38 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// A store backed by a database, which ranks players itself and can be shared by several servers (network mode:
+// playtime is written as deltas and rewards are claimed). Runs on the writer thread like the rest of the store.
+public interface DatabasePlaytimeStore extends PlaytimeStore {
+    record Totals(long playtime, long activeTime) {
+    }
+
+    // What a partial load leaves out of the table: every other player's ranking columns, and their summed daily
+    // playtime so the server history stays whole
+    interface Remainder {
+        void player(UUID playerId, String name, long playtime);
+
+        void serverDay(int day, int seconds);
+    }
+
+    // Like load(), but only the most recently seen players, up to the count, are read in full. The others go to the
+    // remainder and are read back with loadPlayers() when needed.
+    long load(PlayerTable table, BitSet dirtyShards, int recentPlayers, Remainder remainder) throws IOException;
+
+    // Ranks every stored player but the excluded ones; the total counts the same players.
+    PlaytimeLeaderboard.Page queryTop(int offset, int limit, Collection<UUID> excluded) throws IOException;
+
+    Map<UUID, Totals> readPlaytimes(Collection<UUID> playerIds) throws IOException;
+
+    // Returns the rewards this node now owns; the others were already claimed by another server.
+    Set<Integer> claimRewards(UUID playerId, Collection<Integer> rewards, String nodeId) throws IOException;
+
+    void releaseReward(UUID playerId, int reward) throws IOException;
+}
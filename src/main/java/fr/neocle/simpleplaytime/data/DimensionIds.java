@@ -0,0 +1,43 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Dimension keys interned to small ints, so per-player times fit in a plain array indexed by dimension.
+// Ids only mean something within this process; storage always writes the keys.
+public final class DimensionIds {
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> KEYS = new CopyOnWriteArrayList<>();
+
+    private DimensionIds() {
+    }
+
+    // Shards are decoded on the writer thread while the server thread interns new dimensions
+    public static int intern(String key) {
+        Integer id = IDS.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (KEYS) {
+            return IDS.computeIfAbsent(key, k -> {
+                KEYS.add(k);
+                return KEYS.size() - 1;
+            });
+        }
+    }
+
+    public static String key(int id) {
+        return KEYS.get(id);
+    }
+
+    public static int count() {
+        return KEYS.size();
+    }
+
+    public static List<String> keys() {
+        return List.copyOf(KEYS);
+    }
+}
@@ -0,0 +1,419 @@
+package fr.neocle.simpleplaytime.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import fr.neocle.simpleplaytime.config.PlaytimeConfig;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+// Base data lives in playtimes/<shard>.json|.bin, one file per first UUID byte, with the journal on top.
+public class FilePlaytimeStore implements PlaytimeStore {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // Shards are rewritten on every compaction, so they are written compact; the small slot registry stays readable
+    private final Gson gson = new Gson();
+    private final Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
+    private final Path configDir;
+    private final PlaytimeConfig.StorageFormat format;
+    private final Path shardDir;
+    private final PlaytimeJournal journal;
+    private final List<Path> legacyFiles = new ArrayList<>();
+    private final Path rewardSlotsFile;
+
+    private static class RewardRegistry {
+        Map<String, Integer> slots = new LinkedHashMap<>();
+    }
+
+    public FilePlaytimeStore(Path configDir, PlaytimeConfig.StorageFormat format) {
+        this.configDir = configDir;
+        this.format = format;
+        this.shardDir = configDir.resolve("playtimes");
+        this.journal = new PlaytimeJournal(configDir.resolve("playtimes.journal"));
+        this.rewardSlotsFile = configDir.resolve("reward-slots.json");
+    }
+
+    public boolean hasData() {
+        return Files.isDirectory(shardDir)
+                || Files.exists(singleFileFor(PlaytimeConfig.StorageFormat.JSON))
+                || Files.exists(singleFileFor(PlaytimeConfig.StorageFormat.BINARY))
+                || Files.exists(configDir.resolve("playtimes.journal"));
+    }
+
+    @Override
+    public long load(PlayerTable table, BitSet dirtyShards) throws IOException {
+        long[] shardSequences = new long[PlayerTable.SHARD_COUNT];
+        legacyFiles.clear();
+
+        if (Files.isDirectory(shardDir)) {
+            loadShards(table, shardSequences);
+        } else {
+            loadSingleFile(table, shardSequences);
+        }
+        if (!legacyFiles.isEmpty()) {
+            dirtyShards.set(0, PlayerTable.SHARD_COUNT);
+        }
+
+        long baseSequence = Arrays.stream(shardSequences).min().orElse(0L);
+        long lastSequence = Arrays.stream(shardSequences).max().orElse(0L);
+        long replayedSequence = journal.replay(baseSequence, record -> {
+            // A shard written after this record was journaled already contains it
+            int shard = PlayerTable.shardOf(record.id.getMostSignificantBits());
+            if (record.seq <= shardSequences[shard]) {
+                return;
+            }
+            dirtyShards.set(shard);
+
+            switch (record.op) {
+                case PlaytimeJournal.OP_SET_PLAYTIME -> {
+                    PlayerRecord player = table.getOrCreate(record.id);
+                    player.playtime = record.playtime;
+                    player.activeTime = record.activeTime;
+                }
+                case PlaytimeJournal.OP_ADD_PLAYTIME -> {
+                    PlayerRecord player = table.getOrCreate(record.id);
+                    player.playtime += record.playtime;
+                    player.activeTime += record.activeTime;
+                }
+                case PlaytimeJournal.OP_GRANT_REWARD -> table.getOrCreate(record.id).addReward(record.reward);
+                case PlaytimeJournal.OP_SET_NAME -> table.getOrCreate(record.id).name = record.name;
+                case PlaytimeJournal.OP_ADD_DAY -> table.getOrCreate(record.id).addHistory(record.day, record.seconds);
+                case PlaytimeJournal.OP_ADD_DIMENSION -> table.getOrCreate(record.id)
+                        .addDimensionTime(DimensionIds.intern(record.dimension), record.playtime);
+                default -> LOGGER.warn("Unknown playtime journal operation: {}", record.op);
+            }
+        });
+        return Math.max(lastSequence, replayedSequence);
+    }
+
+    private record LoadedShard(Path file, PlaytimeConfig.StorageFormat format, int shard, long sequence, PlayerTable table) {
+    }
+
+    private void loadShards(PlayerTable table, long[] shardSequences) throws IOException {
+        List<Path> shardFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(shardDir)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (formatOf(fileName) != null && shardOf(fileName) >= 0) {
+                    shardFiles.add(file);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        List<LoadedShard> loaded = parseShards(shardFiles);
+        for (LoadedShard shard : loaded) {
+            table.putAll(shard.table());
+            shardSequences[shard.shard()] = Math.max(shardSequences[shard.shard()], shard.sequence());
+            if (shard.format() != format) {
+                legacyFiles.add(shard.file());
+            }
+        }
+        LOGGER.info("Read {} players from {} playtime shards in {} ms",
+                table.size(), loaded.size(), (System.nanoTime() - start) / 1_000_000L);
+
+        if (!legacyFiles.isEmpty()) {
+            LOGGER.info("Migrating {} playtime shards to {} storage", legacyFiles.size(), format);
+        }
+    }
+
+    private void loadSingleFile(PlayerTable table, long[] shardSequences) throws IOException {
+        Path sourceFile = singleFileFor(format);
+        PlaytimeConfig.StorageFormat sourceFormat = format;
+        if (!Files.exists(sourceFile)) {
+            sourceFormat = format == PlaytimeConfig.StorageFormat.BINARY
+                    ? PlaytimeConfig.StorageFormat.JSON
+                    : PlaytimeConfig.StorageFormat.BINARY;
+            sourceFile = singleFileFor(sourceFormat);
+        }
+
+        if (Files.exists(sourceFile)) {
+            Arrays.fill(shardSequences, decode(sourceFile, sourceFormat, table));
+            LOGGER.info("Splitting {} into {} storage shards", sourceFile.getFileName(), format);
+            legacyFiles.add(sourceFile);
+        }
+    }
+
+    @Override
+    public void write(List<PlaytimeJournal.Record> records) throws IOException {
+        journal.append(records);
+    }
+
+    @Override
+    public void writeShards(long sequence, PlayerTable.Snapshot[] shards, BitSet partialShards) throws IOException {
+        Files.createDirectories(shardDir);
+
+        long start = System.nanoTime();
+        int written = 0;
+        long bytesWritten = 0L;
+        for (int shard = 0; shard < shards.length; shard++) {
+            PlayerTable.Snapshot snapshot = shards[shard];
+            if (snapshot == null) {
+                continue;
+            }
+
+            if (partialShards.get(shard)) {
+                snapshot = mergeWithStored(shard, snapshot);
+            }
+
+            Path file = shardDir.resolve(shardFileName(shard, format));
+            if (snapshot.size() == 0) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+
+            byte[] bytes;
+            if (format == PlaytimeConfig.StorageFormat.BINARY) {
+                bytes = BinaryPlaytimeCodec.encode(sequence, snapshot);
+            } else {
+                bytes = gson.toJson(PlaytimeData.fromSnapshot(sequence, snapshot)).getBytes(StandardCharsets.UTF_8);
+            }
+            writeAtomically(file, bytes);
+            written++;
+            bytesWritten += bytes.length;
+        }
+        PlaytimeMetrics.bytesWritten(bytesWritten);
+        LOGGER.debug("Saved {} playtime shards ({} bytes) in {} ms", written, bytesWritten, (System.nanoTime() - start) / 1_000_000L);
+
+        journal.truncate();
+
+        for (Path legacyFile : legacyFiles) {
+            if (shardDir.equals(legacyFile.getParent())) {
+                Files.deleteIfExists(legacyFile);
+            } else {
+                Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        legacyFiles.clear();
+    }
+
+    @Override
+    public List<PlayerRecord> loadPlayers(Collection<UUID> playerIds) throws IOException {
+        Map<Integer, List<UUID>> idsByShard = new HashMap<>();
+        for (UUID playerId : playerIds) {
+            idsByShard.computeIfAbsent(PlayerTable.shardOf(playerId.getMostSignificantBits()), shard -> new ArrayList<>()).add(playerId);
+        }
+
+        List<PlayerRecord> records = new ArrayList<>(playerIds.size());
+        for (Map.Entry<Integer, List<UUID>> entry : idsByShard.entrySet()) {
+            PlayerTable shardTable = readShard(entry.getKey());
+            for (UUID playerId : entry.getValue()) {
+                PlayerRecord record = shardTable.get(playerId);
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    // Evicted players are only in the stored shard, so the resident ones are laid over it
+    private PlayerTable.Snapshot mergeWithStored(int shard, PlayerTable.Snapshot snapshot) throws IOException {
+        PlayerTable merged = readShard(shard);
+        for (int i = 0; i < snapshot.size(); i++) {
+            PlayerRecord record = merged.getOrCreate(snapshot.mostSigBits()[i], snapshot.leastSigBits()[i]);
+            record.playtime = snapshot.playtimes()[i];
+            record.activeTime = snapshot.activeTimes()[i];
+            record.name = snapshot.names()[i];
+            record.setRewardWords(snapshot.rewards()[i]);
+            record.restoreHistory(snapshot.historyEnds()[i], snapshot.histories()[i]);
+            record.dimensionTimes = snapshot.dimensionTimes()[i];
+        }
+
+        BitSet only = new BitSet(PlayerTable.SHARD_COUNT);
+        only.set(shard);
+        return merged.snapshot(only)[shard];
+    }
+
+    private PlayerTable readShard(int shard) throws IOException {
+        PlayerTable shardTable = new PlayerTable();
+        for (PlaytimeConfig.StorageFormat fileFormat : List.of(format, format == PlaytimeConfig.StorageFormat.BINARY
+                ? PlaytimeConfig.StorageFormat.JSON
+                : PlaytimeConfig.StorageFormat.BINARY)) {
+            Path file = shardDir.resolve(shardFileName(shard, fileFormat));
+            if (Files.exists(file)) {
+                decode(file, fileFormat, shardTable);
+                break;
+            }
+        }
+        return shardTable;
+    }
+
+    public void markMigrated() {
+        try {
+            for (PlaytimeConfig.StorageFormat sourceFormat : PlaytimeConfig.StorageFormat.values()) {
+                Path file = singleFileFor(sourceFormat);
+                if (Files.exists(file)) {
+                    Files.move(file, file.resolveSibling(file.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (Files.isDirectory(shardDir)) {
+                Files.move(shardDir, shardDir.resolveSibling("playtimes.migrated"));
+            }
+            journal.close();
+            Path journalFile = configDir.resolve("playtimes.journal");
+            if (Files.exists(journalFile)) {
+                Files.move(journalFile, journalFile.resolveSibling("playtimes.journal.migrated"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to move migrated playtime files", e);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> registerRewards(Map<String, Integer> legacySlots) throws IOException {
+        Map<String, Integer> slots = readRewardSlots();
+        Map<String, Integer> added = RewardSchedule.newSlots(slots, legacySlots);
+        if (!added.isEmpty()) {
+            slots.putAll(added);
+            RewardRegistry registry = new RewardRegistry();
+            registry.slots = slots;
+            Files.createDirectories(configDir);
+            writeAtomically(rewardSlotsFile, prettyGson.toJson(registry).getBytes(StandardCharsets.UTF_8));
+            LOGGER.info("Registered {} new reward slots", added.size());
+        }
+        return slots;
+    }
+
+    Map<String, Integer> readRewardSlots() throws IOException {
+        if (!Files.exists(rewardSlotsFile)) {
+            return new LinkedHashMap<>();
+        }
+
+        try (Reader reader = Files.newBufferedReader(rewardSlotsFile, StandardCharsets.UTF_8)) {
+            RewardRegistry registry = gson.fromJson(reader, RewardRegistry.class);
+            return registry != null && registry.slots != null ? new LinkedHashMap<>(registry.slots) : new LinkedHashMap<>();
+        } catch (JsonParseException e) {
+            throw new IOException("Failed to read " + rewardSlotsFile.getFileName(), e);
+        }
+    }
+
+    @Override
+    public boolean needsFullWrite() {
+        return !legacyFiles.isEmpty();
+    }
+
+    @Override
+    public boolean isAppendOnly() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    // Each shard is parsed into its own table on a fork-join pool, then merged into the live table on this thread
+    private List<LoadedShard> parseShards(List<Path> files) throws IOException {
+        int parallelism = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> files.parallelStream().map(this::parseShard).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading playtime shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Failed to load playtime shards", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private LoadedShard parseShard(Path file) {
+        String fileName = file.getFileName().toString();
+        PlaytimeConfig.StorageFormat fileFormat = formatOf(fileName);
+        PlayerTable shardTable = new PlayerTable();
+        try {
+            long sequence = decode(file, fileFormat, shardTable);
+            return new LoadedShard(file, fileFormat, shardOf(fileName), sequence, shardTable);
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("Failed to read " + file.getFileName(), e));
+        }
+    }
+
+    private long decode(Path file, PlaytimeConfig.StorageFormat sourceFormat, PlayerTable table) throws IOException {
+        if (sourceFormat == PlaytimeConfig.StorageFormat.BINARY) {
+            return BinaryPlaytimeCodec.decode(file, table);
+        }
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return PlaytimeData.read(reader, table);
+        }
+    }
+
+    private Path singleFileFor(PlaytimeConfig.StorageFormat sourceFormat) {
+        return configDir.resolve("playtimes" + extensionOf(sourceFormat));
+    }
+
+    private static String shardFileName(int shard, PlaytimeConfig.StorageFormat fileFormat) {
+        return String.format("%02x", shard) + extensionOf(fileFormat);
+    }
+
+    private static String extensionOf(PlaytimeConfig.StorageFormat fileFormat) {
+        return fileFormat == PlaytimeConfig.StorageFormat.BINARY ? ".bin" : ".json";
+    }
+
+    private static PlaytimeConfig.StorageFormat formatOf(String fileName) {
+        for (PlaytimeConfig.StorageFormat fileFormat : PlaytimeConfig.StorageFormat.values()) {
+            if (fileName.endsWith(extensionOf(fileFormat))) {
+                return fileFormat;
+            }
+        }
+        return null;
+    }
+
+    private static int shardOf(String fileName) {
+        if (fileName.indexOf('.') != 2) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(fileName.substring(0, 2), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
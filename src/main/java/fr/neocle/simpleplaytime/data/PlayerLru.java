@@ -0,0 +1,59 @@
+package fr.neocle.simpleplaytime.data;
+
+// Recency list of resident offline records, linked through the records themselves. Server thread only.
+public class PlayerLru {
+    private PlayerRecord eldest;
+    private PlayerRecord newest;
+    private int size;
+
+    public void touch(PlayerRecord record) {
+        remove(record);
+
+        record.lruOlder = newest;
+        if (newest != null) {
+            newest.lruNewer = record;
+        } else {
+            eldest = record;
+        }
+        newest = record;
+        size++;
+    }
+
+    public void remove(PlayerRecord record) {
+        if (record.lruOlder == null && record.lruNewer == null && eldest != record) {
+            return;
+        }
+
+        if (record.lruOlder != null) {
+            record.lruOlder.lruNewer = record.lruNewer;
+        } else {
+            eldest = record.lruNewer;
+        }
+        if (record.lruNewer != null) {
+            record.lruNewer.lruOlder = record.lruOlder;
+        } else {
+            newest = record.lruOlder;
+        }
+        record.lruOlder = null;
+        record.lruNewer = null;
+        size--;
+    }
+
+    public PlayerRecord eldest() {
+        return eldest;
+    }
+
+    public PlayerRecord newer(PlayerRecord record) {
+        return record.lruNewer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        eldest = null;
+        newest = null;
+        size = 0;
+    }
+}
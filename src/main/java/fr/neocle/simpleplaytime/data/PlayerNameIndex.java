@@ -0,0 +1,118 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+// Case-insensitive trie from player names to UUIDs, used for exact lookups and tab completion.
+public class PlayerNameIndex {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        String name;
+        UUID playerId;
+
+        Node child(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node getOrCreateChild(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            if (i >= 0) {
+                return children[i];
+            }
+
+            int insertAt = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            Node child = new Node();
+            newKeys[insertAt] = key;
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    private Node root = new Node();
+    private int size;
+
+    public void put(String name, UUID playerId) {
+        Node node = root;
+        String key = name.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i));
+        }
+
+        if (node.playerId == null) {
+            size++;
+        }
+        node.name = name;
+        node.playerId = playerId;
+    }
+
+    public void remove(String name, UUID playerId) {
+        Node node = find(name);
+        if (node != null && playerId.equals(node.playerId)) {
+            node.name = null;
+            node.playerId = null;
+            size--;
+        }
+    }
+
+    public UUID get(String name) {
+        Node node = find(name);
+        return node != null ? node.playerId : null;
+    }
+
+    public List<String> complete(String prefix, int limit) {
+        List<String> names = new ArrayList<>();
+        Node node = find(prefix);
+        if (node != null) {
+            collect(node, names, limit);
+        }
+        return names;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = new Node();
+        size = 0;
+    }
+
+    private Node find(String name) {
+        Node node = root;
+        String key = name.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static void collect(Node node, List<String> names, int limit) {
+        if (names.size() >= limit) {
+            return;
+        }
+
+        if (node.playerId != null) {
+            names.add(node.name);
+        }
+        for (Node child : node.children) {
+            collect(child, names, limit);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+public class PlayerRecord {
+    final long mostSigBits;
+    final long leastSigBits;
+    long playtime;
+    long activeTime;
+    long sessionStart;
+    // Activity stamps and the idle time counted since sessionStart, folded into activeTime on flush
+    long lastActivity;
+    long idleTime;
+    // Null until the player plays with the history turned on
+    PlaytimeHistory history;
+    // Time per dimension, indexed by DimensionIds, and the dimension the online player is in since dimensionSince
+    long[] dimensionTimes;
+    int dimension = RewardSchedule.ANY_DIMENSION;
+    long dimensionSince;
+    long rewardDueAt;
+    long refreshedAt;
+    String name;
+    PlayerRecord lruOlder;
+    PlayerRecord lruNewer;
+    private long rewardMask;
+    private long[] extraRewardMask;
+
+    PlayerRecord(long mostSigBits, long leastSigBits) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+    }
+
+    public UUID getId() {
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPlaytime() {
+        return playtime;
+    }
+
+    public long getActiveTime() {
+        return activeTime;
+    }
+
+    public PlaytimeHistory getHistory() {
+        return history;
+    }
+
+    void addHistory(int day, int seconds) {
+        if (history == null) {
+            int days = PlaytimeHistory.retainedDays();
+            if (days <= 0) {
+                return;
+            }
+            history = new PlaytimeHistory(days);
+        }
+        history.add(day, seconds);
+    }
+
+    void restoreHistory(int lastDay, int[] played) {
+        history = PlaytimeHistory.of(PlaytimeHistory.retainedDays(), PlaytimeHistory.dayOf(System.currentTimeMillis()),
+                lastDay, played);
+    }
+
+    public long getDimensionTime(int dimension) {
+        return dimensionTimes != null && dimension < dimensionTimes.length ? dimensionTimes[dimension] : 0L;
+    }
+
+    void addDimensionTime(int dimension, long millis) {
+        if (dimensionTimes == null) {
+            dimensionTimes = new long[Math.max(dimension + 1, 4)];
+        } else if (dimension >= dimensionTimes.length) {
+            dimensionTimes = Arrays.copyOf(dimensionTimes, Math.max(dimension + 1, dimensionTimes.length * 2));
+        }
+        dimensionTimes[dimension] += millis;
+    }
+
+    long[] copyDimensionTimes() {
+        return dimensionTimes == null ? new long[0] : dimensionTimes.clone();
+    }
+
+    public boolean isOnline() {
+        return sessionStart != 0L;
+    }
+
+    // Session arithmetic, shared by the manager and the benchmarks; afkMillis <= 0 counts all playtime as active
+
+    long playtimeAt(long now) {
+        return isOnline() ? playtime + now - sessionStart : playtime;
+    }
+
+    long activeTimeAt(long now, long afkMillis) {
+        return isOnline() ? activeTime + sessionActiveTime(now, afkMillis) : activeTime;
+    }
+
+    // Active part of the session since sessionStart, not folded into activeTime yet
+    long sessionActiveTime(long now, long afkMillis) {
+        return Math.max(0L, now - sessionStart - sessionIdleTime(now, afkMillis));
+    }
+
+    // A stretch of idleness that is still going on counts up to now
+    long sessionIdleTime(long now, long afkMillis) {
+        return idleTime + Math.max(0L, now - idleFrom(afkMillis));
+    }
+
+    // When the current stretch without activity turns idle; idleness before sessionStart was already folded
+    long idleFrom(long afkMillis) {
+        return afkMillis <= 0L ? Long.MAX_VALUE : Math.max(lastActivity + afkMillis, sessionStart);
+    }
+
+    // Time per dimension including the current stay
+    long[] dimensionTimesAt(long now) {
+        long[] times = copyDimensionTimes();
+        if (isOnline() && dimension != RewardSchedule.ANY_DIMENSION) {
+            if (dimension >= times.length) {
+                times = Arrays.copyOf(times, dimension + 1);
+            }
+            times[dimension] += Math.max(0L, now - dimensionSince);
+        }
+        return times;
+    }
+
+    RewardSchedule.Progress progressAt(long now, long afkMillis) {
+        return new RewardSchedule.Progress(playtimeAt(now), activeTimeAt(now, afkMillis), now < idleFrom(afkMillis),
+                dimensionTimesAt(now), isOnline() ? dimension : RewardSchedule.ANY_DIMENSION);
+    }
+
+    public boolean hasReward(int index) {
+        if (index < 64) {
+            return (rewardMask & (1L << index)) != 0;
+        }
+
+        int word = (index >>> 6) - 1;
+        return extraRewardMask != null && word < extraRewardMask.length
+                && (extraRewardMask[word] & (1L << index)) != 0;
+    }
+
+    public boolean addReward(int index) {
+        if (hasReward(index)) {
+            return false;
+        }
+
+        if (index < 64) {
+            rewardMask |= 1L << index;
+            return true;
+        }
+
+        int word = (index >>> 6) - 1;
+        if (extraRewardMask == null) {
+            extraRewardMask = new long[word + 1];
+        } else if (word >= extraRewardMask.length) {
+            extraRewardMask = Arrays.copyOf(extraRewardMask, word + 1);
+        }
+        extraRewardMask[word] |= 1L << index;
+        return true;
+    }
+
+    public long[] getRewardWords() {
+        if (extraRewardMask == null) {
+            return rewardMask == 0L ? new long[0] : new long[]{rewardMask};
+        }
+
+        long[] words = new long[extraRewardMask.length + 1];
+        words[0] = rewardMask;
+        System.arraycopy(extraRewardMask, 0, words, 1, extraRewardMask.length);
+        return words;
+    }
+
+    public void setRewardWords(long[] words) {
+        rewardMask = words.length > 0 ? words[0] : 0L;
+        extraRewardMask = words.length > 1 ? Arrays.copyOfRange(words, 1, words.length) : null;
+    }
+}
@@ -0,0 +1,235 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Open-addressing table keyed by the two UUID longs. Mutated from the server thread only.
+public class PlayerTable {
+    // Records are persisted in shards keyed by the first byte of the UUID
+    public static final int SHARD_COUNT = 256;
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private PlayerRecord[] slots;
+    private int size;
+    private int resizeThreshold;
+
+    // History is the seconds played per day up to historyEnds (an epoch day), or null. Dimension times are
+    // indexed by DimensionIds.
+    public record Snapshot(int size, long[] mostSigBits, long[] leastSigBits, long[] playtimes, long[] activeTimes,
+                           long[][] rewards, String[] names, int[] historyEnds, int[][] histories,
+                           long[][] dimensionTimes) {
+    }
+
+    public PlayerTable() {
+        this(MIN_CAPACITY);
+    }
+
+    public PlayerTable(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public PlayerRecord get(UUID playerId) {
+        return get(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    public PlayerRecord get(long mostSigBits, long leastSigBits) {
+        PlayerRecord[] table = slots;
+        int mask = table.length - 1;
+        for (int i = hash(mostSigBits, leastSigBits) & mask; ; i = (i + 1) & mask) {
+            PlayerRecord record = table[i];
+            if (record == null) {
+                return null;
+            }
+            if (record.mostSigBits == mostSigBits && record.leastSigBits == leastSigBits) {
+                return record;
+            }
+        }
+    }
+
+    public PlayerRecord getOrCreate(UUID playerId) {
+        return getOrCreate(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    public PlayerRecord getOrCreate(long mostSigBits, long leastSigBits) {
+        int mask = slots.length - 1;
+        int i = hash(mostSigBits, leastSigBits) & mask;
+        for (; slots[i] != null; i = (i + 1) & mask) {
+            PlayerRecord record = slots[i];
+            if (record.mostSigBits == mostSigBits && record.leastSigBits == leastSigBits) {
+                return record;
+            }
+        }
+
+        PlayerRecord record = new PlayerRecord(mostSigBits, leastSigBits);
+        slots[i] = record;
+        if (++size > resizeThreshold) {
+            resize(slots.length << 1);
+        }
+        return record;
+    }
+
+    // Inserts an existing record, replacing any record with the same UUID
+    public void put(PlayerRecord record) {
+        int mask = slots.length - 1;
+        int i = hash(record.mostSigBits, record.leastSigBits) & mask;
+        for (; slots[i] != null; i = (i + 1) & mask) {
+            if (slots[i].mostSigBits == record.mostSigBits && slots[i].leastSigBits == record.leastSigBits) {
+                slots[i] = record;
+                return;
+            }
+        }
+
+        slots[i] = record;
+        if (++size > resizeThreshold) {
+            resize(slots.length << 1);
+        }
+    }
+
+    // Moves the records of another table into this one
+    public void putAll(PlayerTable other) {
+        ensureCapacity(size + other.size);
+        for (PlayerRecord record : other.slots) {
+            if (record != null) {
+                put(record);
+            }
+        }
+    }
+
+    public void ensureCapacity(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        if (capacity > slots.length) {
+            resize(capacity);
+        }
+    }
+
+    public PlayerRecord remove(UUID playerId) {
+        long mostSigBits = playerId.getMostSignificantBits();
+        long leastSigBits = playerId.getLeastSignificantBits();
+        int mask = slots.length - 1;
+
+        int i = hash(mostSigBits, leastSigBits) & mask;
+        for (; slots[i] != null; i = (i + 1) & mask) {
+            PlayerRecord record = slots[i];
+            if (record.mostSigBits == mostSigBits && record.leastSigBits == leastSigBits) {
+                slots[i] = null;
+                size--;
+                shiftBack(i);
+                return record;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public void forEach(Consumer<PlayerRecord> action) {
+        for (PlayerRecord record : slots) {
+            if (record != null) {
+                action.accept(record);
+            }
+        }
+    }
+
+    public static int shardOf(long mostSigBits) {
+        return (int) (mostSigBits >>> 56);
+    }
+
+    // Returns one snapshot per requested shard (empty if the shard has no records), null for the others
+    public Snapshot[] snapshot(BitSet shards) {
+        int[] counts = new int[SHARD_COUNT];
+        for (PlayerRecord record : slots) {
+            if (record != null && shards.get(shardOf(record.mostSigBits))) {
+                counts[shardOf(record.mostSigBits)]++;
+            }
+        }
+
+        Snapshot[] snapshots = new Snapshot[SHARD_COUNT];
+        for (int shard = shards.nextSetBit(0); shard >= 0 && shard < SHARD_COUNT; shard = shards.nextSetBit(shard + 1)) {
+            int count = counts[shard];
+            snapshots[shard] = new Snapshot(count, new long[count], new long[count], new long[count], new long[count],
+                    new long[count][], new String[count], new int[count], new int[count][], new long[count][]);
+        }
+
+        int[] filled = new int[SHARD_COUNT];
+        for (PlayerRecord record : slots) {
+            if (record == null) {
+                continue;
+            }
+
+            Snapshot snapshot = snapshots[shardOf(record.mostSigBits)];
+            if (snapshot != null) {
+                int n = filled[shardOf(record.mostSigBits)]++;
+                snapshot.mostSigBits()[n] = record.mostSigBits;
+                snapshot.leastSigBits()[n] = record.leastSigBits;
+                snapshot.playtimes()[n] = record.playtime;
+                snapshot.activeTimes()[n] = record.activeTime;
+                snapshot.rewards()[n] = record.getRewardWords();
+                snapshot.names()[n] = record.name;
+                snapshot.dimensionTimes()[n] = record.copyDimensionTimes();
+                if (record.history != null) {
+                    snapshot.historyEnds()[n] = record.history.getLastDay();
+                    snapshot.histories()[n] = record.history.toArray();
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    private void shiftBack(int gap) {
+        int mask = slots.length - 1;
+        for (int i = (gap + 1) & mask; slots[i] != null; i = (i + 1) & mask) {
+            PlayerRecord record = slots[i];
+            int home = hash(record.mostSigBits, record.leastSigBits) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = record;
+                slots[i] = null;
+                gap = i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        PlayerRecord[] old = slots;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (PlayerRecord record : old) {
+            if (record != null) {
+                int i = hash(record.mostSigBits, record.leastSigBits) & mask;
+                while (slots[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = record;
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = new PlayerRecord[capacity];
+        size = 0;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int hash(long mostSigBits, long leastSigBits) {
+        long h = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits;
+        h ^= h >>> 32;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+}
@@ -0,0 +1,179 @@
+package fr.neocle.simpleplaytime.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+class PlaytimeData {
+    public long journalSequence;
+    public Map<UUID, Long> playtimes;
+    public Map<UUID, Long> activeTimes;
+    public Map<UUID, Set<Integer>> givenRewards;
+    public Map<UUID, String> names;
+    public Map<UUID, History> history;
+    public Map<UUID, Map<String, Long>> dimensions;
+
+    static class History {
+        public int lastDay;
+        public int[] seconds;
+    }
+
+    static PlaytimeData fromSnapshot(long journalSequence, PlayerTable.Snapshot snapshot) {
+        PlaytimeData data = new PlaytimeData();
+        data.journalSequence = journalSequence;
+        data.playtimes = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+        data.activeTimes = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+        data.givenRewards = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+        data.names = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+        data.history = new HashMap<>();
+        data.dimensions = new HashMap<>();
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            UUID id = new UUID(snapshot.mostSigBits()[i], snapshot.leastSigBits()[i]);
+            data.playtimes.put(id, snapshot.playtimes()[i]);
+            data.activeTimes.put(id, snapshot.activeTimes()[i]);
+
+            Set<Integer> rewards = new HashSet<>();
+            BitSet bits = BitSet.valueOf(snapshot.rewards()[i]);
+            for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+                rewards.add(bit);
+            }
+            data.givenRewards.put(id, rewards);
+
+            if (snapshot.names()[i] != null) {
+                data.names.put(id, snapshot.names()[i]);
+            }
+
+            Map<String, Long> dimensions = new HashMap<>();
+            long[] dimensionTimes = snapshot.dimensionTimes()[i];
+            for (int dimension = 0; dimension < dimensionTimes.length; dimension++) {
+                if (dimensionTimes[dimension] != 0L) {
+                    dimensions.put(DimensionIds.key(dimension), dimensionTimes[dimension]);
+                }
+            }
+            if (!dimensions.isEmpty()) {
+                data.dimensions.put(id, dimensions);
+            }
+
+            if (snapshot.histories()[i] != null) {
+                History history = new History();
+                history.lastDay = snapshot.historyEnds()[i];
+                history.seconds = snapshot.histories()[i];
+                data.history.put(id, history);
+            }
+        }
+        return data;
+    }
+
+    // Streams the same layout straight into the table, without building the intermediate maps.
+    static long read(Reader source, PlayerTable table) throws IOException {
+        long sequence = 0L;
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "journalSequence" -> sequence = reader.nextLong();
+                    case "playtimes" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            table.getOrCreate(UUID.fromString(reader.nextName())).playtime = reader.nextLong();
+                        }
+                        reader.endObject();
+                    }
+                    case "activeTimes" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            table.getOrCreate(UUID.fromString(reader.nextName())).activeTime = reader.nextLong();
+                        }
+                        reader.endObject();
+                    }
+                    case "givenRewards" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            PlayerRecord record = table.getOrCreate(UUID.fromString(reader.nextName()));
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                record.addReward(reader.nextInt());
+                            }
+                            reader.endArray();
+                        }
+                        reader.endObject();
+                    }
+                    case "names" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            PlayerRecord record = table.getOrCreate(UUID.fromString(reader.nextName()));
+                            if (reader.peek() == JsonToken.NULL) {
+                                reader.nextNull();
+                            } else {
+                                record.name = reader.nextString();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    case "dimensions" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            PlayerRecord record = table.getOrCreate(UUID.fromString(reader.nextName()));
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                record.addDimensionTime(DimensionIds.intern(reader.nextName()), reader.nextLong());
+                            }
+                            reader.endObject();
+                        }
+                        reader.endObject();
+                    }
+                    case "history" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            PlayerRecord record = table.getOrCreate(UUID.fromString(reader.nextName()));
+                            readHistory(reader, record);
+                        }
+                        reader.endObject();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("Malformed playtime data", e);
+        }
+        return sequence;
+    }
+
+    private static void readHistory(JsonReader reader, PlayerRecord record) throws IOException {
+        int lastDay = 0;
+        int[] played = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "lastDay" -> lastDay = reader.nextInt();
+                case "seconds" -> {
+                    List<Integer> days = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        days.add(reader.nextInt());
+                    }
+                    reader.endArray();
+                    played = days.stream().mapToInt(Integer::intValue).toArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (played != null) {
+            record.restoreHistory(lastDay, played);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package fr.neocle.simpleplaytime.data;
+
+import fr.neocle.simpleplaytime.config.PlaytimeConfig;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+// Seconds played per day over a fixed number of days, kept in a ring indexed by epoch day. A second ring holds
+// running totals up to each day, so the time played over any window is one subtraction.
+public class PlaytimeHistory {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final int[] seconds;
+    private final long[] prefix;
+    private int lastDay = Integer.MIN_VALUE;
+
+    public PlaytimeHistory(int days) {
+        this.seconds = new int[days];
+        this.prefix = new long[days];
+    }
+
+    public static int retainedDays() {
+        return PlaytimeConfig.HISTORY_DAYS.get();
+    }
+
+    // Days are counted in the server's time zone
+    public static int dayOf(long millis) {
+        return (int) Instant.ofEpochMilli(millis).atZone(ZONE).toLocalDate().toEpochDay();
+    }
+
+    public static long startOfDay(int day) {
+        return LocalDate.ofEpochDay(day).atStartOfDay(ZONE).toInstant().toEpochMilli();
+    }
+
+    public int getDays() {
+        return seconds.length;
+    }
+
+    public boolean isEmpty() {
+        return lastDay == Integer.MIN_VALUE;
+    }
+
+    // Days older than the ring are dropped; a later day moves the ring forward, clearing the days it skips
+    public void add(int day, int played) {
+        int days = seconds.length;
+        if (isEmpty()) {
+            lastDay = day;
+            seconds[index(day)] = 0;
+            prefix[index(day)] = 0L;
+        } else if (day > lastDay) {
+            long total = prefix[index(lastDay)];
+            for (int d = Math.max(lastDay + 1, day - days + 1); d <= day; d++) {
+                seconds[index(d)] = 0;
+                prefix[index(d)] = total;
+            }
+            lastDay = day;
+        } else if (day <= lastDay - days) {
+            return;
+        }
+
+        seconds[index(day)] += played;
+        for (int d = day; d <= lastDay; d++) {
+            prefix[index(d)] += played;
+        }
+    }
+
+    public int get(int day) {
+        if (isEmpty() || day > lastDay || day <= lastDay - seconds.length) {
+            return 0;
+        }
+        return seconds[index(day)];
+    }
+
+    // Seconds played over the given number of days ending with today, capped to the days kept
+    public long sum(int today, int window) {
+        if (isEmpty()) {
+            return 0L;
+        }
+
+        int newest = Math.min(today, lastDay);
+        int oldest = Math.max(today - Math.min(window, seconds.length) + 1, lastDay - seconds.length + 1);
+        if (oldest > newest) {
+            return 0L;
+        }
+        return prefix[index(newest)] - prefix[index(oldest)] + seconds[index(oldest)];
+    }
+
+    public int getLastDay() {
+        return lastDay;
+    }
+
+    // The kept days from the first one played up to the last day, or null if nothing was played in them
+    public int[] toArray() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        int first = lastDay - seconds.length + 1;
+        while (first <= lastDay && seconds[index(first)] == 0) {
+            first++;
+        }
+        if (first > lastDay) {
+            return null;
+        }
+
+        int[] played = new int[lastDay - first + 1];
+        for (int d = first; d <= lastDay; d++) {
+            played[d - first] = seconds[index(d)];
+        }
+        return played;
+    }
+
+    // Restores days written by toArray; returns null when none of them is still within the kept days of today
+    public static PlaytimeHistory of(int days, int today, int lastDay, int[] played) {
+        if (days <= 0 || played == null || lastDay <= today - days) {
+            return null;
+        }
+
+        PlaytimeHistory history = new PlaytimeHistory(days);
+        int first = lastDay - played.length + 1;
+        for (int d = Math.max(first, lastDay - days + 1); d <= lastDay; d++) {
+            history.add(d, played[d - first]);
+        }
+        return history;
+    }
+
+    // Merges in bulk and rebuilds the running totals once, rather than paying for a shifted add per day
+    public void addAll(PlaytimeHistory other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        if (isEmpty() || other.lastDay > lastDay) {
+            add(other.lastDay, 0);
+        }
+
+        int oldest = lastDay - seconds.length + 1;
+        for (int d = Math.max(oldest, other.lastDay - other.seconds.length + 1); d <= other.lastDay; d++) {
+            seconds[index(d)] += other.seconds[other.index(d)];
+        }
+
+        long total = 0L;
+        for (int d = oldest; d <= lastDay; d++) {
+            total += seconds[index(d)];
+            prefix[index(d)] = total;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(seconds, 0);
+        Arrays.fill(prefix, 0L);
+        lastDay = Integer.MIN_VALUE;
+    }
+
+    private int index(int day) {
+        return Math.floorMod(day, seconds.length);
+    }
+}
@@ -0,0 +1,211 @@
+package fr.neocle.simpleplaytime.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public class PlaytimeJournal {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public static final String OP_SET_PLAYTIME = "set";
+    public static final String OP_ADD_PLAYTIME = "add";
+    public static final String OP_GRANT_REWARD = "reward";
+    public static final String OP_SET_NAME = "name";
+    public static final String OP_ADD_DAY = "day";
+    public static final String OP_ADD_DIMENSION = "dimension";
+
+    private final Gson gson = new Gson();
+    private final Path journalFile;
+    private FileChannel channel;
+    private boolean partialLine;
+
+    public PlaytimeJournal(Path journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    public static class Record {
+        public long seq;
+        public String op;
+        public UUID id;
+        public long playtime;
+        public long activeTime;
+        public int reward;
+        public int day;
+        public int seconds;
+        public String dimension;
+        public String name;
+
+        public static Record setPlaytime(long seq, UUID id, long playtime, long activeTime) {
+            Record record = new Record();
+            record.seq = seq;
+            record.op = OP_SET_PLAYTIME;
+            record.id = id;
+            record.playtime = playtime;
+            record.activeTime = activeTime;
+            return record;
+        }
+
+        public static Record addPlaytime(long seq, UUID id, long delta, long activeDelta) {
+            Record record = new Record();
+            record.seq = seq;
+            record.op = OP_ADD_PLAYTIME;
+            record.id = id;
+            record.playtime = delta;
+            record.activeTime = activeDelta;
+            return record;
+        }
+
+        public static Record grantReward(long seq, UUID id, int reward) {
+            Record record = new Record();
+            record.seq = seq;
+            record.op = OP_GRANT_REWARD;
+            record.id = id;
+            record.reward = reward;
+            return record;
+        }
+
+        public static Record addDay(long seq, UUID id, int day, int seconds) {
+            Record record = new Record();
+            record.seq = seq;
+            record.op = OP_ADD_DAY;
+            record.id = id;
+            record.day = day;
+            record.seconds = seconds;
+            return record;
+        }
+
+        public static Record addDimension(long seq, UUID id, String dimension, long delta) {
+            Record record = new Record();
+            record.seq = seq;
+            record.op = OP_ADD_DIMENSION;
+            record.id = id;
+            record.dimension = dimension;
+            record.playtime = delta;
+            return record;
+        }
+
+        public static Record setName(long seq, UUID id, String name) {
+            Record record = new Record();
+            record.seq = seq;
+            record.op = OP_SET_NAME;
+            record.id = id;
+            record.name = name;
+            return record;
+        }
+    }
+
+    // Throws when the records may not have reached the file, the caller then has to persist them another way
+    public void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        StringBuilder lines = new StringBuilder();
+        if (partialLine) {
+            // A failed write may have left half a line, end it so replay skips it instead of the next record
+            lines.append('\n');
+        }
+        for (Record record : records) {
+            lines.append(gson.toJson(record)).append('\n');
+        }
+
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(journalFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            partialLine = false;
+            PlaytimeMetrics.bytesWritten(buffer.capacity());
+        } catch (IOException e) {
+            partialLine = true;
+            close();
+            throw new IOException("Failed to append " + records.size() + " records to the playtime journal", e);
+        }
+    }
+
+    public void truncate() {
+        try {
+            if (channel != null) {
+                channel.truncate(0);
+                channel.force(false);
+            } else {
+                Files.deleteIfExists(journalFile);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to truncate playtime journal", e);
+        }
+    }
+
+    public long replay(long afterSeq, Consumer<Record> consumer) {
+        if (!Files.exists(journalFile)) {
+            return afterSeq;
+        }
+
+        long lastSeq = afterSeq;
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    LOGGER.warn("Skipping corrupt playtime journal entry: {}", line);
+                    continue;
+                }
+
+                if (record == null || record.id == null || record.seq <= afterSeq) {
+                    continue;
+                }
+
+                consumer.accept(record);
+                lastSeq = Math.max(lastSeq, record.seq);
+                replayed++;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to replay playtime journal", e);
+        }
+
+        if (replayed > 0) {
+            LOGGER.info("Replayed {} playtime journal entries", replayed);
+        }
+        return lastSeq;
+    }
+
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close playtime journal", e);
+        }
+        channel = null;
+    }
+}
@@ -0,0 +1,189 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Order-statistic treap ordered by playtime (descending), then UUID. Mutated from the server thread only.
+public class PlaytimeLeaderboard {
+    public record Entry(UUID playerId, long playtime) {
+    }
+
+    // A page of the ranking and the number of ranked players it was taken from
+    public record Page(List<Entry> entries, int total) {
+    }
+
+    private static class Node {
+        final long playtime;
+        final long mostSigBits;
+        final long leastSigBits;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(long playtime, long mostSigBits, long leastSigBits) {
+            this.playtime = playtime;
+            this.mostSigBits = mostSigBits;
+            this.leastSigBits = leastSigBits;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    private Node root;
+
+    public int size() {
+        return size(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    public void insert(long playtime, long mostSigBits, long leastSigBits) {
+        root = insert(root, new Node(playtime, mostSigBits, leastSigBits));
+    }
+
+    public void remove(long playtime, long mostSigBits, long leastSigBits) {
+        root = remove(root, playtime, mostSigBits, leastSigBits);
+    }
+
+    public int countBefore(long playtime, long mostSigBits, long leastSigBits) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (compare(node.playtime, node.mostSigBits, node.leastSigBits, playtime, mostSigBits, leastSigBits) < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    public Entry get(int rank) {
+        Node node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (rank < leftSize) {
+                node = node.left;
+            } else if (rank == leftSize) {
+                return new Entry(new UUID(node.mostSigBits, node.leastSigBits), node.playtime);
+            } else {
+                rank -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    // The tree is ordered by playtime first, so finding a player by id walks it. Only used when a record is lost.
+    public long playtimeOf(long mostSigBits, long leastSigBits) {
+        return playtimeOf(root, mostSigBits, leastSigBits);
+    }
+
+    private static long playtimeOf(Node node, long mostSigBits, long leastSigBits) {
+        if (node == null) {
+            return -1L;
+        }
+        if (node.mostSigBits == mostSigBits && node.leastSigBits == leastSigBits) {
+            return node.playtime;
+        }
+        long playtime = playtimeOf(node.left, mostSigBits, leastSigBits);
+        return playtime >= 0L ? playtime : playtimeOf(node.right, mostSigBits, leastSigBits);
+    }
+
+    static int compare(long playtimeA, long mostSigBitsA, long leastSigBitsA,
+                       long playtimeB, long mostSigBitsB, long leastSigBitsB) {
+        if (playtimeA != playtimeB) {
+            return playtimeA > playtimeB ? -1 : 1;
+        }
+        if (mostSigBitsA != mostSigBitsB) {
+            return Long.compare(mostSigBitsA, mostSigBitsB);
+        }
+        return Long.compare(leastSigBitsA, leastSigBitsB);
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+
+        if (compare(inserted.playtime, inserted.mostSigBits, inserted.leastSigBits,
+                node.playtime, node.mostSigBits, node.leastSigBits) < 0) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node remove(Node node, long playtime, long mostSigBits, long leastSigBits) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = compare(playtime, mostSigBits, leastSigBits, node.playtime, node.mostSigBits, node.leastSigBits);
+        if (cmp < 0) {
+            node.left = remove(node.left, playtime, mostSigBits, leastSigBits);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, playtime, mostSigBits, leastSigBits);
+        } else {
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -1,12 +1,20 @@
 package fr.neocle.simpleplaytime.data;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import net.minecraft.Util;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.players.GameProfileCache;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.LevelResource;
 import net.neoforged.fml.loading.FMLPaths;
+import fr.neocle.simpleplaytime.api.GrantedReward;
+import fr.neocle.simpleplaytime.api.RewardListener;
 import fr.neocle.simpleplaytime.config.PlaytimeConfig;
 import fr.neocle.simpleplaytime.integration.LuckPermsIntegration;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
+import fr.neocle.simpleplaytime.util.TimeFormatter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -14,22 +22,59 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
 
 public class PlaytimeManager {
     private static final Logger LOGGER = LogManager.getLogger();
-    private static PlaytimeManager INSTANCE;
+    private static final int COMPACTION_THRESHOLD = 4096;
+    private static final int IMPORT_BATCH_SIZE = 1000;
 
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private final Map<UUID, Long> playtimes = new ConcurrentHashMap<>();
-    private final Map<UUID, Long> sessionStartTimes = new ConcurrentHashMap<>();
-    private final Map<UUID, Set<Integer>> givenRewards = new ConcurrentHashMap<>();
+    private final PlayerTable players = new PlayerTable();
+    private final List<PlayerRecord> onlinePlayers = new ArrayList<>();
+    private final PlaytimeLeaderboard leaderboard = new PlaytimeLeaderboard();
+    private final PlayerNameIndex nameIndex = new PlayerNameIndex();
+    private final SessionCache sessions = new SessionCache();
+    private final List<RewardListener> rewardListeners = new CopyOnWriteArrayList<>();
+    private final PriorityQueue<ScheduledReward> rewardQueue = new PriorityQueue<>(Comparator.comparingLong(ScheduledReward::dueAt));
+    private final Map<UUID, Set<Integer>> pendingRewards = new HashMap<>();
+    private final RewardRetryQueue retryQueue = new RewardRetryQueue();
+    private final RewardCommandQueue commandQueue = new RewardCommandQueue();
+    private RewardSchedule rewardSchedule = RewardSchedule.EMPTY;
+    private volatile boolean scheduleInvalidated;
+    // Logins while rewards are off schedule nothing, so turning them back on has to reschedule everyone
+    private boolean rewardsPaused;
     private final Path configDir;
-    private final Path dataFile;
+    private final Path pendingCommandsFile;
+    private final SnapshotWriter snapshotWriter;
+    private PlaytimeStore store;
+    private long journalSeq;
+    private int journalRecordsSinceCompaction;
+    private final BitSet dirtyShards = new BitSet(PlayerTable.SHARD_COUNT);
+    private volatile boolean compactionFailed;
+    private volatile boolean journalWriteFailed;
+    // Changes a store without a journal failed to write, in order, and the store they are for. Writer thread only.
+    private final List<PlaytimeJournal.Record> unwrittenRecords = new ArrayList<>();
+    private PlaytimeStore unwrittenStore;
+    private long submittedCompaction;
+    private volatile long persistedCompaction;
+    private final UuidSet coldPlayers = new UuidSet();
+    private final int[] coldPlayersPerShard = new int[PlayerTable.SHARD_COUNT];
+    private final PlayerLru recentPlayers = new PlayerLru();
+    private final Map<UUID, PendingLogin> pendingLogins = new HashMap<>();
+    private boolean networkMode;
+    private String nodeId;
+    private long nextNetworkFlushAt;
+    private long nextNetworkRefreshAt;
+    private boolean importRunning;
+    private PlaytimeHistory serverHistory;
 
     private PlaytimeManager() {
         this.configDir = FMLPaths.CONFIGDIR.get().resolve("simpleplaytime");
-        this.dataFile = configDir.resolve("playtimes.json");
+        this.pendingCommandsFile = configDir.resolve("pending-reward-commands.json");
+        this.snapshotWriter = new SnapshotWriter();
+        this.store = new FilePlaytimeStore(configDir, PlaytimeConfig.StorageFormat.JSON);
 
         try {
             Files.createDirectories(configDir);
@@ -38,57 +83,653 @@ public class PlaytimeManager {
         }
     }
 
+    // Class initialization publishes the instance safely to every thread, including API callers
+    private static class Holder {
+        private static final PlaytimeManager INSTANCE = new PlaytimeManager();
+    }
+
     public static PlaytimeManager getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new PlaytimeManager();
-        }
-        return INSTANCE;
+        return Holder.INSTANCE;
+    }
+
+    public SessionCache getSessionCache() {
+        return sessions;
+    }
+
+    public void addRewardListener(RewardListener listener) {
+        rewardListeners.add(listener);
+    }
+
+    public void removeRewardListener(RewardListener listener) {
+        rewardListeners.remove(listener);
     }
 
     public void onPlayerLogin(ServerPlayer player) {
+        long loginAt = System.currentTimeMillis();
         UUID playerId = player.getUUID();
-        sessionStartTimes.put(playerId, System.currentTimeMillis());
+        PendingLogin pending = pendingLogins.get(playerId);
+        if (pending == null && !coldPlayers.contains(playerId)) {
+            startSession(player, loginAt, dimensionOf(player), loginAt);
+            return;
+        }
 
-        if (!playtimes.containsKey(playerId)) {
-            playtimes.put(playerId, 0L);
+        // Evicted player: read them back off-thread, the session still counts from the login time
+        if (pending == null) {
+            pending = new PendingLogin(player.getServer());
+            pendingLogins.put(playerId, pending);
         }
+        pending.player = player;
+        pending.loginAt = loginAt;
+        pending.dimension = dimensionOf(player);
+        pending.dimensionSince = loginAt;
+        pending.dimensionTimes = new long[0];
+        loadPendingLogin(playerId, pending);
+    }
 
-        if (!givenRewards.containsKey(playerId)) {
-            givenRewards.put(playerId, new HashSet<>());
+    // Sessions are only started on, and credited to, the record read back from storage
+    private void loadPendingLogin(UUID playerId, PendingLogin pending) {
+        if (pending.loading) {
+            return;
         }
+
+        pending.loading = true;
+        preload(pending.server, List.of(playerId)).thenRun(() -> {
+            pending.loading = false;
+            if (pendingLogins.get(playerId) != pending) {
+                // Already handled by another load
+                return;
+            }
+
+            pendingLogins.remove(playerId);
+            PlayerRecord record = players.get(playerId);
+            if (record == null) {
+                record = adoptFallbackRecord(playerId);
+            }
+            for (ClosedSession session : pending.closedSessions) {
+                creditClosedSession(record, session);
+            }
+            if (pending.player != null) {
+                // Stays in other dimensions while loading are over, the current one carries on
+                List<PlaytimeJournal.Record> records = new ArrayList<>();
+                addDimensionTimes(record, pending.dimensionTimes, records);
+                appendJournal(records);
+                startSession(pending.player, pending.loginAt, pending.dimension, pending.dimensionSince);
+            }
+        });
+    }
+
+    // The evicted record is missing or unreadable. Rather than hold the session forever, start over from the total
+    // the leaderboard still has, with every reward up to it counted as granted so none is handed out twice.
+    private PlayerRecord adoptFallbackRecord(UUID playerId) {
+        PlayerRecord record = players.getOrCreate(playerId);
+        recentPlayers.touch(record);
+        if (!coldPlayers.remove(playerId)) {
+            return record;
+        }
+        coldPlayersPerShard[PlayerTable.shardOf(record.mostSigBits)]--;
+
+        long playtime = Math.max(0L, leaderboard.playtimeOf(record.mostSigBits, record.leastSigBits));
+        LOGGER.error("Could not read the stored record of evicted player {}, continuing from a fresh record with {}",
+                playerId, TimeFormatter.formatPlaytime(playtime));
+        if (networkMode) {
+            // The session refresh reads the shared total, and claims already keep rewards from being granted twice
+            return record;
+        }
+
+        // Already ranked at that total, so setting it moves nothing
+        record.playtime = playtime;
+        List<PlaytimeJournal.Record> records = new ArrayList<>();
+        setPlaytime(record, playtime, System.currentTimeMillis(), records);
+        for (RewardSchedule.Reward reward : getRewardSchedule().getRewards()) {
+            if (reward.requiredMillis() <= playtime && record.addReward(reward.slot())) {
+                records.add(PlaytimeJournal.Record.grantReward(++journalSeq, playerId, reward.slot()));
+            }
+        }
+        appendJournal(records);
+        return record;
+    }
+
+    // A session that ended before the player's evicted record was read back. No activity was sampled meanwhile,
+    // so only up to the AFK threshold of it counts as active.
+    private void creditClosedSession(PlayerRecord record, ClosedSession session) {
+        long delta = session.logoutAt() - session.loginAt();
+        long afkMillis = afkThresholdMillis();
+        long activeDelta = afkMillis <= 0L ? delta : Math.min(delta, afkMillis);
+        leaderboard.remove(record.playtime, record.mostSigBits, record.leastSigBits);
+        record.playtime += delta;
+        record.activeTime += activeDelta;
+        leaderboard.insert(record.playtime, record.mostSigBits, record.leastSigBits);
+
+        List<PlaytimeJournal.Record> records = new ArrayList<>(4);
+        recordHistory(record, session.loginAt(), session.logoutAt(), records);
+        addDimensionTimes(record, session.dimensionTimes(), records);
+        records.add(playtimeRecord(record, delta, activeDelta));
+        appendJournal(records);
+    }
+
+    private void startSession(ServerPlayer player, long loginAt, int dimension, long dimensionSince) {
+        long now = System.currentTimeMillis();
+        PlayerRecord record = resolve(player.getUUID());
+
+        if (!record.isOnline()) {
+            onlinePlayers.add(record);
+            recentPlayers.remove(record);
+            leaderboard.remove(record.playtime, record.mostSigBits, record.leastSigBits);
+        }
+        record.sessionStart = loginAt;
+        record.lastActivity = loginAt;
+        record.idleTime = 0L;
+        record.dimension = dimension;
+        record.dimensionSince = dimensionSince;
+        sessions.start(record, loginAt);
+
+        String name = player.getGameProfile().getName();
+        if (!name.equals(record.name)) {
+            appendJournal(List.of(rename(record, name)));
+        }
+
+        if (PlaytimeConfig.ENABLE_REWARDS.get()) {
+            scheduleNextReward(record, now);
+        }
+
+        if (networkMode) {
+            // The player may have been playing on another server since this one last read their total
+            refreshPlaytimes(player.getServer(), List.of(record));
+        }
+        publishPlayerCounts();
+    }
+
+    private PlaytimeJournal.Record rename(PlayerRecord record, String name) {
+        UUID playerId = record.getId();
+        if (record.name != null) {
+            nameIndex.remove(record.name, playerId);
+        }
+        record.name = name;
+        nameIndex.put(name, playerId);
+        return PlaytimeJournal.Record.setName(++journalSeq, playerId, name);
+    }
+
+    public UUID findPlayerId(String name) {
+        return nameIndex.get(name);
+    }
+
+    // Evicted players show as their UUID unless preloaded
+    public String getPlayerName(UUID playerId) {
+        PlayerRecord record = players.get(playerId);
+        return record != null && record.name != null ? record.name : playerId.toString();
+    }
+
+    public List<String> completePlayerNames(String prefix, int limit) {
+        return nameIndex.complete(prefix, limit);
     }
 
     public void onPlayerLogout(ServerPlayer player) {
         UUID playerId = player.getUUID();
-        Long sessionStart = sessionStartTimes.remove(playerId);
+        PlayerRecord record = players.get(playerId);
+        if (record == null || !record.isOnline()) {
+            PendingLogin pending = pendingLogins.get(playerId);
+            if (pending != null && pending.player == player) {
+                long now = System.currentTimeMillis();
+                pending.flushDimension(now);
+                pending.closedSessions.add(new ClosedSession(pending.loginAt, now, pending.dimensionTimes));
+                pending.player = null;
+            }
+            return;
+        }
 
-        if (sessionStart != null) {
-            long sessionTime = System.currentTimeMillis() - sessionStart;
-            playtimes.merge(playerId, sessionTime, Long::sum);
+        long now = System.currentTimeMillis();
+        long delta = now - record.sessionStart;
+        long activeDelta = foldActiveTime(record, now);
+        List<PlaytimeJournal.Record> records = new ArrayList<>(3);
+        recordHistory(record, record.sessionStart, now, records);
+        flushDimension(record, now, records);
+        record.dimension = RewardSchedule.ANY_DIMENSION;
+        record.playtime += delta;
+        record.sessionStart = 0L;
+        record.rewardDueAt = 0L;
+        onlinePlayers.remove(record);
+        sessions.remove(playerId);
+        recentPlayers.touch(record);
+        leaderboard.insert(record.playtime, record.mostSigBits, record.leastSigBits);
 
-            checkAndGiveRewards(player);
-            saveData();
-        }
+        records.add(playtimeRecord(record, delta, activeDelta));
+        appendJournal(records);
+        checkAndGiveRewards(player);
+        publishPlayerCounts();
     }
 
+    // Evicted players read as 0 until preloaded, queryPlaytime loads them first
     public long getPlaytime(UUID playerId) {
-        long totalTime = playtimes.getOrDefault(playerId, 0L);
+        PlayerRecord record = find(playerId);
+        return record == null ? 0L : record.playtimeAt(System.currentTimeMillis());
+    }
+
+    public long getActiveTime(UUID playerId) {
+        PlayerRecord record = find(playerId);
+        return record == null ? 0L : record.activeTimeAt(System.currentTimeMillis(), afkThresholdMillis());
+    }
 
-        Long sessionStart = sessionStartTimes.get(playerId);
-        if (sessionStart != null) {
-            totalTime += System.currentTimeMillis() - sessionStart;
+    // Activity only stamps the record; idle stretches are worked out from the stamps when the session is flushed
+    public void recordActivity(ServerPlayer player) {
+        PlayerRecord record = players.get(player.getUUID());
+        if (record != null && record.isOnline()) {
+            recordActivity(record, System.currentTimeMillis());
         }
+    }
 
-        return totalTime;
+    // Movement has no event, but the server stamps every player packet for its own idle kick; read that stamp
+    public void sampleActivity(MinecraftServer server) {
+        long now = System.currentTimeMillis();
+        long clock = Util.getMillis();
+        for (int i = 0; i < onlinePlayers.size(); i++) {
+            PlayerRecord record = onlinePlayers.get(i);
+            ServerPlayer player = server.getPlayerList().getPlayer(record.getId());
+            if (player != null) {
+                recordActivity(record, now - (clock - player.getLastActionTime()));
+            }
+        }
     }
 
-    public String getFormattedPlaytime(UUID playerId) {
-        long millis = getPlaytime(playerId);
-        long hours = millis / (1000 * 60 * 60);
-        long minutes = (millis % (1000 * 60 * 60)) / (1000 * 60);
-        long seconds = (millis % (1000 * 60)) / 1000;
+    private void recordActivity(PlayerRecord record, long at) {
+        if (at <= record.lastActivity) {
+            return;
+        }
+
+        long idleFrom = record.idleFrom(afkThresholdMillis());
+        record.lastActivity = at;
+        if (at > idleFrom) {
+            // Back from AFK: the gap past the threshold was idle and the active clock runs again
+            record.idleTime += at - idleFrom;
+            if (PlaytimeConfig.ENABLE_REWARDS.get()) {
+                scheduleNextReward(record, at);
+            }
+        }
+    }
+
+    // Moves the active part of the session since sessionStart into activeTime and returns it; the caller moves
+    // sessionStart to now. A stretch of idleness that is still going on is split at now.
+    private long foldActiveTime(PlayerRecord record, long now) {
+        long activeDelta = record.sessionActiveTime(now, afkThresholdMillis());
+        record.activeTime += activeDelta;
+        record.idleTime = 0L;
+        return activeDelta;
+    }
+
+    private static long afkThresholdMillis() {
+        return PlaytimeConfig.AFK_THRESHOLD_SECONDS.get() * 1000L;
+    }
+
+    // Splits a flushed stretch of play at midnight into the player's and the server's daily buckets. Whole
+    // seconds are counted between second boundaries, so consecutive flushes add up without drift.
+    private void recordHistory(PlayerRecord record, long from, long to, List<PlaytimeJournal.Record> out) {
+        if (serverHistory == null || to <= from) {
+            return;
+        }
+
+        int day = PlaytimeHistory.dayOf(from);
+        while (from < to) {
+            long end = Math.min(to, PlaytimeHistory.startOfDay(day + 1));
+            int seconds = (int) (Math.floorDiv(end, 1000L) - Math.floorDiv(from, 1000L));
+            if (seconds > 0) {
+                record.addHistory(day, seconds);
+                serverHistory.add(day, seconds);
+                out.add(PlaytimeJournal.Record.addDay(++journalSeq, record.getId(), day, seconds));
+            }
+            from = end;
+            day++;
+        }
+    }
+
+    // Dimension changes close the stretch spent in the old dimension, so nothing needs to watch where players are
+    public void onPlayerChangedDimension(ServerPlayer player, ResourceKey<Level> to) {
+        PlayerRecord record = players.get(player.getUUID());
+        if (record == null || !record.isOnline()) {
+            PendingLogin pending = pendingLogins.get(player.getUUID());
+            if (pending != null && pending.player == player) {
+                pending.flushDimension(System.currentTimeMillis());
+                pending.dimension = DimensionIds.intern(to.location().toString());
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<PlaytimeJournal.Record> records = new ArrayList<>(1);
+        flushDimension(record, now, records);
+        record.dimension = DimensionIds.intern(to.location().toString());
+        appendJournal(records);
+
+        if (PlaytimeConfig.ENABLE_REWARDS.get()) {
+            scheduleNextReward(record, now);
+        }
+    }
+
+    private static int dimensionOf(ServerPlayer player) {
+        return DimensionIds.intern(player.level().dimension().location().toString());
+    }
+
+    private void flushDimension(PlayerRecord record, long now, List<PlaytimeJournal.Record> out) {
+        long delta = now - record.dimensionSince;
+        record.dimensionSince = now;
+        if (record.dimension == RewardSchedule.ANY_DIMENSION || delta <= 0L) {
+            return;
+        }
+
+        record.addDimensionTime(record.dimension, delta);
+        out.add(PlaytimeJournal.Record.addDimension(++journalSeq, record.getId(), DimensionIds.key(record.dimension), delta));
+    }
+
+    private void addDimensionTimes(PlayerRecord record, long[] times, List<PlaytimeJournal.Record> out) {
+        for (int dimension = 0; dimension < times.length; dimension++) {
+            if (times[dimension] > 0L) {
+                record.addDimensionTime(dimension, times[dimension]);
+                out.add(PlaytimeJournal.Record.addDimension(++journalSeq, record.getId(), DimensionIds.key(dimension), times[dimension]));
+            }
+        }
+    }
+
+    // Time per dimension key including the current stay, longest first
+    public Map<String, Long> getDimensionTimes(UUID playerId) {
+        PlayerRecord record = find(playerId);
+        Map<String, Long> times = new LinkedHashMap<>();
+        if (record == null) {
+            return times;
+        }
+
+        long[] dimensionTimes = record.dimensionTimesAt(System.currentTimeMillis());
+        Integer[] order = new Integer[dimensionTimes.length];
+        for (int dimension = 0; dimension < order.length; dimension++) {
+            order[dimension] = dimension;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(dimensionTimes[b], dimensionTimes[a]));
+        for (int dimension : order) {
+            if (dimensionTimes[dimension] > 0L) {
+                times.put(DimensionIds.key(dimension), dimensionTimes[dimension]);
+            }
+        }
+        return times;
+    }
+
+    public int getHistoryDays() {
+        return serverHistory == null ? 0 : serverHistory.getDays();
+    }
+
+    // Time played over the last days including today, and the current session's unflushed part
+    public long getRecentPlaytime(UUID playerId, int days) {
+        PlayerRecord record = find(playerId);
+        if (record == null) {
+            return 0L;
+        }
+
+        long now = System.currentTimeMillis();
+        int today = PlaytimeHistory.dayOf(now);
+        long millis = record.history == null ? 0L : record.history.sum(today, days) * 1000L;
+        return millis + unflushedSince(record, PlaytimeHistory.startOfDay(today - days + 1), now);
+    }
+
+    public long getServerRecentPlaytime(int days) {
+        if (serverHistory == null) {
+            return 0L;
+        }
+
+        long now = System.currentTimeMillis();
+        int today = PlaytimeHistory.dayOf(now);
+        long windowStart = PlaytimeHistory.startOfDay(today - days + 1);
+        long millis = serverHistory.sum(today, days) * 1000L;
+        for (PlayerRecord record : onlinePlayers) {
+            millis += unflushedSince(record, windowStart, now);
+        }
+        return millis;
+    }
+
+    private static long unflushedSince(PlayerRecord record, long windowStart, long now) {
+        return record.isOnline() ? Math.max(0L, now - Math.max(record.sessionStart, windowStart)) : 0L;
+    }
+
+    public CompletableFuture<Long> queryRecentPlaytime(MinecraftServer server, UUID playerId, int days) {
+        return preload(server, List.of(playerId)).thenApply(loaded -> getRecentPlaytime(playerId, days));
+    }
+
+    public CompletableFuture<Long> queryPlaytime(MinecraftServer server, UUID playerId) {
+        return preload(server, List.of(playerId)).thenCompose(loaded -> {
+            PlayerRecord record = players.get(playerId);
+            if (!networkMode || record == null
+                    || System.currentTimeMillis() - record.refreshedAt < PlaytimeConfig.NETWORK_CACHE_SECONDS.get() * 1000L) {
+                return CompletableFuture.completedFuture(getPlaytime(playerId));
+            }
+            return refreshPlaytimes(server, List.of(record)).thenApply(ignored -> getPlaytime(playerId));
+        });
+    }
+
+    // Resident record, or null for unknown players and evicted ones that were not preloaded
+    private PlayerRecord find(UUID playerId) {
+        PlayerRecord record = players.get(playerId);
+        if (record != null && !record.isOnline()) {
+            recentPlayers.touch(record);
+        }
+        return record;
+    }
+
+    // Creates unknown players. Evicted players must be preloaded first: null means reading them back failed, and
+    // a new record would shadow the stored one.
+    private PlayerRecord resolve(UUID playerId) {
+        PlayerRecord record = find(playerId);
+        if (record != null || coldPlayers.contains(playerId)) {
+            return record;
+        }
+
+        record = players.getOrCreate(playerId);
+        recentPlayers.touch(record);
+        return record;
+    }
 
-        return String.format("%dh %dm %ds", hours, minutes, seconds);
+    // Reads evicted players back on the writer thread; completes on the server thread once they are resident
+    public CompletableFuture<Void> preload(MinecraftServer server, Collection<UUID> playerIds) {
+        List<UUID> cold = new ArrayList<>();
+        for (UUID playerId : playerIds) {
+            if (coldPlayers.contains(playerId)) {
+                cold.add(playerId);
+            }
+        }
+        if (cold.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        PlaytimeStore target = store;
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        snapshotWriter.execute(() -> {
+            List<PlayerRecord> records;
+            try {
+                records = target.loadPlayers(cold);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to load {} evicted players", cold.size(), e);
+                records = List.of();
+            }
+
+            List<PlayerRecord> result = records;
+            server.execute(() -> {
+                adoptColdRecords(result);
+                loaded.complete(null);
+            });
+        });
+        return loaded;
+    }
+
+    private void adoptColdRecords(List<PlayerRecord> records) {
+        for (PlayerRecord record : records) {
+            // Another load may have brought the player back already
+            if (coldPlayers.remove(record.getId())) {
+                coldPlayersPerShard[PlayerTable.shardOf(record.mostSigBits)]--;
+                players.put(record);
+                recentPlayers.touch(record);
+            }
+        }
+    }
+
+    private void evictColdRecords() {
+        int budget = PlaytimeConfig.MAX_CACHED_PLAYERS.get();
+        if (budget <= 0 || recentPlayers.size() <= budget) {
+            return;
+        }
+        // Shard files only stand in for evicted records once every compaction submitted so far has landed
+        if (store.isAppendOnly() && (compactionFailed || persistedCompaction != submittedCompaction)) {
+            return;
+        }
+        // Nor does a database still missing changes that are waiting to be written again
+        if (!store.isAppendOnly() && journalWriteFailed) {
+            return;
+        }
+
+        int evicted = 0;
+        PlayerRecord record = recentPlayers.eldest();
+        while (record != null && recentPlayers.size() > budget) {
+            PlayerRecord next = recentPlayers.newer(record);
+            int shard = PlayerTable.shardOf(record.mostSigBits);
+            UUID playerId = record.getId();
+            if (!(store.isAppendOnly() && dirtyShards.get(shard)) && !pendingRewards.containsKey(playerId)) {
+                recentPlayers.remove(record);
+                players.remove(playerId);
+                coldPlayers.add(playerId);
+                coldPlayersPerShard[shard]++;
+                evicted++;
+            }
+            record = next;
+        }
+
+        if (evicted > 0) {
+            LOGGER.debug("Evicted {} player records, {} resident and {} evicted", evicted, players.size(), coldPlayers.size());
+        }
+    }
+
+    public int getLeaderboardSize() {
+        return leaderboard.size() + onlinePlayers.size();
+    }
+
+    // Completes on the server thread with the page's evicted players loaded, so their names can be shown
+    public CompletableFuture<PlaytimeLeaderboard.Page> queryTopPlaytimes(MinecraftServer server, int offset, int limit) {
+        CompletableFuture<PlaytimeLeaderboard.Page> page;
+        if (store instanceof DatabasePlaytimeStore target) {
+            // The database has online players as of the last save, so they are left out of it and ranked live
+            PlaytimeLeaderboard.Entry[] online = getOnlineRanking(System.currentTimeMillis());
+            List<UUID> onlineIds = new ArrayList<>(online.length);
+            for (PlaytimeLeaderboard.Entry entry : online) {
+                onlineIds.add(entry.playerId());
+            }
+            // At most every online player ranks before the page, so stored rows are read from that much earlier
+            int from = Math.max(0, offset - online.length);
+            page = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return target.queryTop(from, offset + limit - from, onlineIds);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, snapshotWriter.getExecutor()).thenApply(stored -> mergeOnline(stored, from, online, offset, limit));
+        } else {
+            page = CompletableFuture.completedFuture(new PlaytimeLeaderboard.Page(getTopPlaytimes(offset, limit), getLeaderboardSize()));
+        }
+
+        return page.thenComposeAsync(top -> {
+            List<UUID> playerIds = new ArrayList<>(top.entries().size());
+            for (PlaytimeLeaderboard.Entry entry : top.entries()) {
+                playerIds.add(entry.playerId());
+            }
+            return preload(server, playerIds).thenApply(loaded -> top);
+        }, server);
+    }
+
+    // Stored offline rows starting at offline rank from, merged with the live online ranking
+    private static PlaytimeLeaderboard.Page mergeOnline(PlaytimeLeaderboard.Page stored, int from,
+                                                        PlaytimeLeaderboard.Entry[] online, int offset, int limit) {
+        List<PlaytimeLeaderboard.Entry> rows = stored.entries();
+        int onlineIndex = 0;
+        if (from > 0 && !rows.isEmpty()) {
+            while (onlineIndex < online.length && compareEntries(online[onlineIndex], rows.get(0)) < 0) {
+                onlineIndex++;
+            }
+        }
+
+        List<PlaytimeLeaderboard.Entry> page = new ArrayList<>(limit);
+        int rank = from + onlineIndex;
+        int rowIndex = 0;
+        while (page.size() < limit && (rowIndex < rows.size() || onlineIndex < online.length)) {
+            PlaytimeLeaderboard.Entry next;
+            if (rowIndex == rows.size()
+                    || (onlineIndex < online.length && compareEntries(online[onlineIndex], rows.get(rowIndex)) < 0)) {
+                next = online[onlineIndex++];
+            } else {
+                next = rows.get(rowIndex++);
+            }
+            if (rank++ >= offset) {
+                page.add(next);
+            }
+        }
+        return new PlaytimeLeaderboard.Page(page, stored.total() + online.length);
+    }
+
+    public List<PlaytimeLeaderboard.Entry> getTopPlaytimes(int offset, int limit) {
+        PlaytimeLeaderboard.Entry[] online = getOnlineRanking(System.currentTimeMillis());
+
+        int onlineBefore = 0;
+        while (onlineBefore < online.length && onlineBefore + countOfflineBefore(online[onlineBefore]) < offset) {
+            onlineBefore++;
+        }
+
+        List<PlaytimeLeaderboard.Entry> page = new ArrayList<>(limit);
+        int offlineIndex = offset - onlineBefore;
+        int onlineIndex = onlineBefore;
+        PlaytimeLeaderboard.Entry offline = leaderboard.get(offlineIndex);
+
+        while (page.size() < limit && (offline != null || onlineIndex < online.length)) {
+            if (offline == null || (onlineIndex < online.length && compareEntries(online[onlineIndex], offline) < 0)) {
+                page.add(online[onlineIndex++]);
+            } else {
+                page.add(offline);
+                offline = leaderboard.get(++offlineIndex);
+            }
+        }
+        return page;
+    }
+
+    public int getRank(UUID playerId) {
+        PlayerRecord record = find(playerId);
+        if (record == null) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        PlaytimeLeaderboard.Entry self = new PlaytimeLeaderboard.Entry(playerId, record.playtimeAt(now));
+        int rank = countOfflineBefore(self);
+        for (PlaytimeLeaderboard.Entry entry : getOnlineRanking(now)) {
+            if (compareEntries(entry, self) < 0) {
+                rank++;
+            }
+        }
+        return rank + 1;
+    }
+
+    private PlaytimeLeaderboard.Entry[] getOnlineRanking(long now) {
+        PlaytimeLeaderboard.Entry[] online = new PlaytimeLeaderboard.Entry[onlinePlayers.size()];
+        for (int i = 0; i < online.length; i++) {
+            PlayerRecord record = onlinePlayers.get(i);
+            online[i] = new PlaytimeLeaderboard.Entry(record.getId(), record.playtimeAt(now));
+        }
+        Arrays.sort(online, PlaytimeManager::compareEntries);
+        return online;
+    }
+
+    private int countOfflineBefore(PlaytimeLeaderboard.Entry entry) {
+        return leaderboard.countBefore(entry.playtime(),
+                entry.playerId().getMostSignificantBits(), entry.playerId().getLeastSignificantBits());
+    }
+
+    private static int compareEntries(PlaytimeLeaderboard.Entry a, PlaytimeLeaderboard.Entry b) {
+        return PlaytimeLeaderboard.compare(
+                a.playtime(), a.playerId().getMostSignificantBits(), a.playerId().getLeastSignificantBits(),
+                b.playtime(), b.playerId().getMostSignificantBits(), b.playerId().getLeastSignificantBits());
+    }
+
+    public String getFormattedPlaytime(UUID playerId) {
+        String cached = sessions.getFormattedPlaytime(playerId, System.currentTimeMillis());
+        return cached != null ? cached : TimeFormatter.formatPlaytime(getPlaytime(playerId));
     }
 
     public void checkAndGiveRewards(ServerPlayer player) {
@@ -97,62 +738,383 @@ public class PlaytimeManager {
         }
 
         UUID playerId = player.getUUID();
-        long playtimeMillis = getPlaytime(playerId);
-        long currentHours = playtimeMillis / (1000 * 60 * 60);
+        PlayerRecord record = players.get(playerId);
+        if (record == null) {
+            return;
+        }
+
+        PlaytimeMetrics.rewardCheck();
+        long now = System.currentTimeMillis();
+        List<RewardSchedule.Reward> eligible = new ArrayList<>();
+        getRewardSchedule().collectDue(record.progressAt(now, afkThresholdMillis()), slot -> record.hasReward(slot)
+                || retryQueue.isBlocked(playerId, slot, now), eligible);
+        if (!eligible.isEmpty()) {
+            Set<Integer> playerPending = pendingRewards.computeIfAbsent(playerId, id -> new HashSet<>());
+            eligible.removeIf(reward -> !playerPending.add(reward.slot()));
+        }
+
+        if (!eligible.isEmpty()) {
+            PlaytimeMetrics.rewardsFired(eligible.size());
+            if (networkMode) {
+                claimAndGrantRewards(player, eligible);
+            } else {
+                grantRewards(player, eligible);
+            }
+        }
+
+        if (record.isOnline()) {
+            scheduleNextReward(record, now);
+        }
+    }
+
+    private void claimAndGrantRewards(ServerPlayer player, List<RewardSchedule.Reward> rewards) {
+        UUID playerId = player.getUUID();
+        MinecraftServer server = player.getServer();
+        List<Integer> rewardSlots = rewards.stream().map(RewardSchedule.Reward::slot).toList();
+        // Network mode is only ever enabled on a database store
+        DatabasePlaytimeStore target = (DatabasePlaytimeStore) store;
 
-        Set<Integer> playerRewards = givenRewards.getOrDefault(playerId, new HashSet<>());
-        List<? extends String> rewardConfigs = PlaytimeConfig.REWARD_CONFIGS.get();
+        snapshotWriter.execute(() -> {
+            Set<Integer> claimed;
+            try {
+                claimed = target.claimRewards(playerId, rewardSlots, nodeId);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to claim rewards for {}", playerId, e);
+                claimed = null;
+            }
 
-        for (int i = 0; i < rewardConfigs.size(); i++) {
-            String config = rewardConfigs.get(i);
+            Set<Integer> result = claimed;
+            server.execute(() -> {
+                List<RewardSchedule.Reward> granted = new ArrayList<>();
+                for (RewardSchedule.Reward reward : rewards) {
+                    if (result == null) {
+                        clearPending(playerId, reward.slot());
+                        recordFailure(playerId, reward.slot());
+                    } else if (result.contains(reward.slot())) {
+                        granted.add(reward);
+                    } else {
+                        // Another server claimed it first and granted it there
+                        clearPending(playerId, reward.slot());
+                        retryQueue.recordSuccess(playerId, reward.slot());
+                        resolve(playerId).addReward(reward.slot());
+                    }
+                }
 
-            if (playerRewards.contains(i)) {
-                continue;
+                if (!granted.isEmpty()) {
+                    grantRewards(player, granted);
+                    // The claims are already committed for every server, a crash before the next save must not
+                    // lose the queued commands
+                    savePendingCommands();
+                }
+
+                PlayerRecord record = players.get(playerId);
+                if (record != null && record.isOnline()) {
+                    scheduleNextReward(record, System.currentTimeMillis());
+                }
+            });
+        });
+    }
+
+    private void grantRewards(ServerPlayer player, List<RewardSchedule.Reward> rewards) {
+        UUID playerId = player.getUUID();
+        List<Integer> batchIndexes = new ArrayList<>();
+        List<String> batchGroups = new ArrayList<>();
+        List<String> batchPermissions = new ArrayList<>();
+
+        for (RewardSchedule.Reward reward : rewards) {
+            switch (reward.type()) {
+                case "group":
+                    batchIndexes.add(reward.slot());
+                    batchGroups.add(reward.value());
+                    break;
+                case "permission":
+                    batchIndexes.add(reward.slot());
+                    batchPermissions.add(reward.value());
+                    break;
+                case "command":
+                    String command = reward.value().replace("%player%", player.getGameProfile().getName());
+                    commandQueue.add(new RewardCommandQueue.Entry(playerId, reward.slot(), command, System.currentTimeMillis()));
+                    break;
+                default:
+                    completeReward(playerId, reward.slot(), false);
+                    break;
+            }
+        }
+
+        if (!batchIndexes.isEmpty()) {
+            dispatchLuckPermsBatch(player, batchIndexes, batchGroups, batchPermissions);
+        }
+    }
+
+    private void dispatchLuckPermsBatch(ServerPlayer player, List<Integer> rewardSlots,
+                                        List<String> groups, List<String> permissions) {
+        UUID playerId = player.getUUID();
+        MinecraftServer server = player.getServer();
+
+        LuckPermsIntegration.grantRewards(player, groups, permissions).thenAccept(success -> server.execute(() -> {
+            for (int rewardSlot : rewardSlots) {
+                completeReward(playerId, rewardSlot, success);
+            }
+
+            PlayerRecord record = players.get(playerId);
+            if (record != null && record.isOnline()) {
+                scheduleNextReward(record, System.currentTimeMillis());
+            }
+        }));
+    }
+
+    private void completeReward(UUID playerId, int rewardSlot, boolean success) {
+        clearPending(playerId, rewardSlot);
+
+        if (!success) {
+            if (networkMode) {
+                releaseClaim(playerId, rewardSlot);
+            }
+            recordFailure(playerId, rewardSlot);
+            return;
+        }
+
+        retryQueue.recordSuccess(playerId, rewardSlot);
+        if (resolve(playerId).addReward(rewardSlot)) {
+            appendJournal(List.of(PlaytimeJournal.Record.grantReward(++journalSeq, playerId, rewardSlot)));
+            notifyRewardGranted(playerId, rewardSlot);
+        }
+    }
+
+    private void notifyRewardGranted(UUID playerId, int rewardSlot) {
+        RewardSchedule.Reward reward = getRewardSchedule().getReward(rewardSlot);
+        if (reward == null || rewardListeners.isEmpty()) {
+            return;
+        }
+
+        GrantedReward granted = new GrantedReward(playerId, reward.id(), reward.type(), reward.value(), reward.requiredMillis());
+        for (RewardListener listener : rewardListeners) {
+            try {
+                listener.onRewardGranted(granted);
+            } catch (RuntimeException e) {
+                LOGGER.error("Reward listener {} failed", listener, e);
+            }
+        }
+    }
+
+    private void clearPending(UUID playerId, int rewardSlot) {
+        Set<Integer> playerPending = pendingRewards.get(playerId);
+        if (playerPending != null) {
+            playerPending.remove(rewardSlot);
+            if (playerPending.isEmpty()) {
+                pendingRewards.remove(playerId);
+            }
+        }
+    }
+
+    private void recordFailure(UUID playerId, int rewardSlot) {
+        RewardRetryQueue.Entry entry = retryQueue.recordFailure(playerId, rewardSlot, System.currentTimeMillis(),
+                PlaytimeConfig.REWARD_RETRY_MAX_ATTEMPTS.get(), PlaytimeConfig.REWARD_RETRY_BASE_SECONDS.get() * 1000L);
+        if (entry.exhausted()) {
+            LOGGER.warn("Giving up on reward #{} for {} after {} attempts", rewardSlot, playerId, entry.attempts());
+        }
+    }
+
+    private void releaseClaim(UUID playerId, int rewardSlot) {
+        DatabasePlaytimeStore target = (DatabasePlaytimeStore) store;
+        snapshotWriter.execute(() -> {
+            try {
+                target.releaseReward(playerId, rewardSlot);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to release reward #{} for {}", rewardSlot, playerId, e);
             }
+        });
+    }
+
+    public List<RewardRetryQueue.Entry> getFailedRewards() {
+        return retryQueue.getEntries();
+    }
 
-            String[] parts = config.split(":", 3);
-            if (parts.length < 3) {
+    public RewardSchedule.Reward getReward(int rewardSlot) {
+        return getRewardSchedule().getReward(rewardSlot);
+    }
+
+    public int flushFailedRewards() {
+        List<RewardRetryQueue.Entry> entries = retryQueue.getEntries();
+        long now = System.currentTimeMillis();
+        for (UUID playerId : retryQueue.flush()) {
+            PlayerRecord record = players.get(playerId);
+            if (record != null && record.isOnline() && PlaytimeConfig.ENABLE_REWARDS.get()) {
+                scheduleNextReward(record, now);
+            }
+        }
+        return entries.size();
+    }
+
+    public void processDueRewards(MinecraftServer server) {
+        if (!PlaytimeConfig.ENABLE_REWARDS.get()) {
+            rewardsPaused = true;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (scheduleInvalidated || rewardsPaused) {
+            reloadRewardSchedule(server, rewardsPaused);
+            scheduleInvalidated = false;
+            rewardsPaused = false;
+        }
+
+        ScheduledReward head;
+        while ((head = rewardQueue.peek()) != null && head.dueAt() <= now) {
+            rewardQueue.poll();
+
+            PlayerRecord record = head.record();
+            if (record.rewardDueAt != head.dueAt() || !record.isOnline()) {
                 continue;
             }
+            record.rewardDueAt = 0L;
 
+            ServerPlayer player = server.getPlayerList().getPlayer(record.getId());
+            if (player != null) {
+                checkAndGiveRewards(player);
+            }
+        }
+    }
+
+    // Reward commands can be heavy (kits, broadcasts), so a burst of grants is spread over the next ticks instead
+    // of running in one. The reward stays pending until its command has run.
+    public void dispatchRewardCommands(MinecraftServer server) {
+        if (commandQueue.isEmpty()) {
+            return;
+        }
+
+        int maxCommands = PlaytimeConfig.REWARD_COMMANDS_PER_TICK.get();
+        long budgetNanos = PlaytimeConfig.REWARD_COMMAND_BUDGET_MICROS.get() * 1000L;
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        for (int dispatched = 0; dispatched < maxCommands && !commandQueue.isEmpty(); dispatched++) {
+            if (dispatched > 0 && budgetNanos > 0L && System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+
+            RewardCommandQueue.Entry entry = commandQueue.poll();
+            PlaytimeMetrics.REWARD_COMMAND_WAIT.record(Math.max(0L, now - entry.queuedAt()) * 1_000_000L);
+            long commandStart = System.nanoTime();
+            boolean success = executeCommand(server, entry.command());
+            PlaytimeMetrics.REWARD_COMMAND.record(System.nanoTime() - commandStart);
+            completeReward(entry.playerId(), entry.rewardSlot(), success);
+
+            PlayerRecord record = players.get(entry.playerId());
+            if (record != null && record.isOnline()) {
+                scheduleNextReward(record, System.currentTimeMillis());
+            }
+        }
+    }
+
+    public int getPendingRewardCommands() {
+        return commandQueue.size();
+    }
+
+    public void invalidateRewardSchedule() {
+        scheduleInvalidated = true;
+    }
+
+    private RewardSchedule getRewardSchedule() {
+        return rewardSchedule;
+    }
+
+    // New rewards may need registering in the store, so the schedule is rebuilt on the writer thread and
+    // swapped in on the server thread; the old schedule keeps running until then.
+    private void reloadRewardSchedule(MinecraftServer server, boolean rescheduleAll) {
+        List<RewardSchedule.Definition> definitions = RewardSchedule.parse(PlaytimeConfig.REWARD_CONFIGS.get());
+        PlaytimeStore target = store;
+        snapshotWriter.execute(() -> {
+            Map<String, Integer> slots;
             try {
-                int requiredHours = Integer.parseInt(parts[0]);
-                String type = parts[1].toLowerCase();
-                String value = parts[2];
-
-                if (currentHours >= requiredHours) {
-                    boolean success = false;
-                    switch (type) {
-                        case "group":
-                            success = LuckPermsIntegration.addPlayerToGroup(player, value);
-                            break;
-                        case "permission":
-                            success = LuckPermsIntegration.givePlayerPermission(player, value);
-                            break;
-                        case "command":
-                            String command = value.replace("%player%", player.getGameProfile().getName());
-                            success = executeCommand(player, command);
-                            break;
-                        default:
-                            LOGGER.warn("Unknown reward type: {}", type);
-                            continue;
-                    }
+                slots = target.registerRewards(RewardSchedule.legacySlots(definitions));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to register rewards, keeping the previous reward schedule", e);
+                return;
+            }
 
-                    if (success) {
-                        playerRewards.add(i);
-                        givenRewards.put(playerId, playerRewards);
-                    }
+            RewardSchedule schedule = RewardSchedule.compile(definitions, slots);
+            server.execute(() -> {
+                if (store == target) {
+                    applyRewardSchedule(schedule, rescheduleAll);
+                }
+            });
+        });
+    }
+
+    // Only players missing one of the added, removed or re-timed tiers can have a different next reward, unless
+    // nobody was scheduled before: rewards were off, or the previous schedule was empty
+    private void applyRewardSchedule(RewardSchedule schedule, boolean rescheduleAll) {
+        int[] changedSlots = schedule.changedSlots(rewardSchedule);
+        rescheduleAll |= rewardSchedule.getRewards().length == 0;
+        rewardSchedule = schedule;
+        if (changedSlots.length == 0 && !rescheduleAll) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int affected = 0;
+        for (PlayerRecord record : onlinePlayers) {
+            if (rescheduleAll) {
+                record.rewardDueAt = 0L;
+                scheduleNextReward(record, now);
+                affected++;
+                continue;
+            }
+            for (int slot : changedSlots) {
+                if (!record.hasReward(slot)) {
+                    record.rewardDueAt = 0L;
+                    scheduleNextReward(record, now);
+                    affected++;
+                    break;
                 }
-            } catch (NumberFormatException e) {
-                LOGGER.warn("Invalid reward config (bad number): {}", config);
             }
         }
+        LOGGER.info("Reward config changed ({} tiers), re-evaluated {} of {} online players",
+                changedSlots.length, affected, onlinePlayers.size());
     }
 
-    private boolean executeCommand(ServerPlayer player, String command) {
+    // Runs on the server thread like store.load(), the writer has nothing queued for the new store yet
+    private RewardSchedule loadRewardSchedule() {
+        List<RewardSchedule.Definition> definitions = RewardSchedule.parse(PlaytimeConfig.REWARD_CONFIGS.get());
         try {
-            CommandSourceStack source = player.getServer().createCommandSourceStack();
-            player.getServer().getCommands().performPrefixedCommand(source, command);
+            return RewardSchedule.compile(definitions, store.registerRewards(RewardSchedule.legacySlots(definitions)));
+        } catch (IOException | RuntimeException e) {
+            // Granting under unknown slots could hand out rewards twice, run without rewards instead
+            LOGGER.error("Failed to load the reward registry, rewards are disabled until the next reload", e);
+            return RewardSchedule.EMPTY;
+        }
+    }
+
+    private void scheduleNextReward(PlayerRecord record, long now) {
+        UUID playerId = record.getId();
+        Set<Integer> playerPending = pendingRewards.getOrDefault(playerId, Collections.emptySet());
+        long dueIn = getRewardSchedule().nextDueIn(record.progressAt(now, afkThresholdMillis()),
+                slot -> record.hasReward(slot)
+                        || playerPending.contains(slot)
+                        || retryQueue.isBlocked(playerId, slot, now));
+        long retryAt = retryQueue.nextAttemptAt(playerId);
+        if (dueIn == Long.MAX_VALUE && retryAt == Long.MAX_VALUE) {
+            record.rewardDueAt = 0L;
+            return;
+        }
+
+        long dueAt = retryAt;
+        if (dueIn != Long.MAX_VALUE) {
+            dueAt = Math.min(dueAt, now + dueIn);
+        }
+        dueAt = Math.max(dueAt, now + 1);
+
+        if (record.rewardDueAt != dueAt) {
+            record.rewardDueAt = dueAt;
+            rewardQueue.add(new ScheduledReward(dueAt, record));
+        }
+    }
+
+    private boolean executeCommand(MinecraftServer server, String command) {
+        try {
+            CommandSourceStack source = server.createCommandSourceStack();
+            server.getCommands().performPrefixedCommand(source, command);
             return true;
         } catch (Exception e) {
             LOGGER.error("Exception while executing reward command: {}", command, e);
@@ -162,63 +1124,579 @@ public class PlaytimeManager {
 
 
     public void saveData() {
-        for (Map.Entry<UUID, Long> entry : sessionStartTimes.entrySet()) {
-            UUID playerId = entry.getKey();
-            long sessionStart = entry.getValue();
-            long sessionTime = System.currentTimeMillis() - sessionStart;
-            playtimes.merge(playerId, sessionTime, Long::sum);
+        long now = System.currentTimeMillis();
+        List<PlaytimeJournal.Record> records = new ArrayList<>(onlinePlayers.size());
+        for (PlayerRecord record : onlinePlayers) {
+            long delta = now - record.sessionStart;
+            long activeDelta = foldActiveTime(record, now);
+            recordHistory(record, record.sessionStart, now, records);
+            flushDimension(record, now, records);
+            record.playtime += delta;
+            record.sessionStart = now;
+            sessions.update(record);
+            records.add(playtimeRecord(record, delta, activeDelta));
+        }
+        retryUnwrittenRecords();
+        appendJournal(records);
+        savePendingCommands();
+        compactAndEvict();
+    }
+
+    private void compactAndEvict() {
+        if (store.isAppendOnly() && (journalWriteFailed || journalRecordsSinceCompaction >= COMPACTION_THRESHOLD)) {
+            compactData();
+        }
+        evictColdRecords();
+        publishPlayerCounts();
+    }
 
-            sessionStartTimes.put(playerId, System.currentTimeMillis());
+    // Queued behind the journal, so a grant journaled before the save is never still pending in the file
+    private void savePendingCommands() {
+        List<RewardCommandQueue.Entry> pending = commandQueue.snapshotIfChanged();
+        if (pending == null) {
+            return;
         }
 
-        try {
-            PlaytimeData data = new PlaytimeData();
-            data.playtimes = new HashMap<>(playtimes);
-            data.givenRewards = new HashMap<>(givenRewards);
+        snapshotWriter.execute(() -> {
+            try {
+                RewardCommandQueue.write(pendingCommandsFile, pending);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to save {} pending reward commands", pending.size(), e);
+            }
+        });
+    }
 
-            String json = gson.toJson(data);
-            Files.write(dataFile, json.getBytes());
+    // Commands still queued at the last save run again, unless the journal shows their reward was granted after it
+    private void restorePendingCommands() {
+        commandQueue.clear();
+        List<RewardCommandQueue.Entry> pending;
+        try {
+            pending = RewardCommandQueue.read(pendingCommandsFile);
         } catch (IOException e) {
-            LOGGER.error("Failed to save playtime data", e);
+            LOGGER.error("Failed to read pending reward commands", e);
+            return;
+        }
+
+        for (RewardCommandQueue.Entry entry : pending) {
+            if (entry.playerId() == null || entry.command() == null) {
+                continue;
+            }
+            PlayerRecord record = find(entry.playerId());
+            if (record != null && record.hasReward(entry.rewardSlot())) {
+                continue;
+            }
+            if (pendingRewards.computeIfAbsent(entry.playerId(), id -> new HashSet<>()).add(entry.rewardSlot())) {
+                commandQueue.add(entry);
+            }
+        }
+        if (!commandQueue.isEmpty()) {
+            LOGGER.info("Restored {} pending reward commands", commandQueue.size());
         }
     }
 
+    // Counts are published for JMX readers, which cannot touch the table off the server thread
+    private void publishPlayerCounts() {
+        PlaytimeMetrics.playerCounts(players.size() + coldPlayers.size(), onlinePlayers.size(), coldPlayers.size());
+    }
 
-    public void loadData() {
-        if (!Files.exists(dataFile)) {
+    // Other servers add to the same totals in network mode, so only this server's share is written
+    private PlaytimeJournal.Record playtimeRecord(PlayerRecord record, long delta, long activeDelta) {
+        if (networkMode) {
+            return PlaytimeJournal.Record.addPlaytime(++journalSeq, record.getId(), delta, activeDelta);
+        }
+        return PlaytimeJournal.Record.setPlaytime(++journalSeq, record.getId(), record.playtime, record.activeTime);
+    }
+
+    public void syncNetwork(MinecraftServer server) {
+        if (!networkMode) {
             return;
         }
 
-        try {
-            String json = Files.readString(dataFile);
-            PlaytimeData data = gson.fromJson(json, PlaytimeData.class);
+        long now = System.currentTimeMillis();
+        if (now >= nextNetworkFlushAt) {
+            nextNetworkFlushAt = now + PlaytimeConfig.NETWORK_FLUSH_SECONDS.get() * 1000L;
+            saveData();
+        }
+
+        if (now >= nextNetworkRefreshAt) {
+            long ttl = PlaytimeConfig.NETWORK_CACHE_SECONDS.get() * 1000L;
+            nextNetworkRefreshAt = now + ttl;
+
+            List<PlayerRecord> stale = new ArrayList<>();
+            for (PlayerRecord record : onlinePlayers) {
+                if (now - record.refreshedAt >= ttl) {
+                    stale.add(record);
+                }
+            }
+            if (!stale.isEmpty()) {
+                refreshPlaytimes(server, stale);
+            }
+        }
+    }
+
+    // Reads run on the writer thread after every change queued so far, so a total read back already contains
+    // this server's flushed deltas and only the difference to the playtime captured here is applied.
+    private CompletableFuture<Void> refreshPlaytimes(MinecraftServer server, List<PlayerRecord> records) {
+        List<UUID> playerIds = new ArrayList<>(records.size());
+        long[] basePlaytimes = new long[records.size()];
+        long[] baseActiveTimes = new long[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            playerIds.add(records.get(i).getId());
+            basePlaytimes[i] = records.get(i).playtime;
+            baseActiveTimes[i] = records.get(i).activeTime;
+        }
 
-            if (data.playtimes != null) {
-                playtimes.clear();
-                playtimes.putAll(data.playtimes);
+        DatabasePlaytimeStore target = (DatabasePlaytimeStore) store;
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        snapshotWriter.execute(() -> {
+            Map<UUID, DatabasePlaytimeStore.Totals> totals;
+            try {
+                totals = target.readPlaytimes(playerIds);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to read {} playtimes from the shared store", playerIds.size(), e);
+                totals = Map.of();
             }
 
-            if (data.givenRewards != null) {
-                givenRewards.clear();
-                givenRewards.putAll(data.givenRewards);
+            Map<UUID, DatabasePlaytimeStore.Totals> result = totals;
+            server.execute(() -> {
+                applyRemotePlaytimes(records, basePlaytimes, baseActiveTimes, result);
+                applied.complete(null);
+            });
+        });
+        return applied;
+    }
+
+    private void applyRemotePlaytimes(List<PlayerRecord> records, long[] basePlaytimes, long[] baseActiveTimes,
+                                      Map<UUID, DatabasePlaytimeStore.Totals> totals) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < records.size(); i++) {
+            PlayerRecord record = records.get(i);
+            if (players.get(record.mostSigBits, record.leastSigBits) != record) {
+                continue;
             }
-        } catch (IOException e) {
-            LOGGER.error("Failed to load playtime data", e);
+            record.refreshedAt = now;
+
+            DatabasePlaytimeStore.Totals total = totals.get(record.getId());
+            if (total == null) {
+                continue;
+            }
+            long adjustment = total.playtime() - basePlaytimes[i];
+            long activeAdjustment = total.activeTime() - baseActiveTimes[i];
+            if (adjustment == 0L && activeAdjustment == 0L) {
+                continue;
+            }
+            record.activeTime += activeAdjustment;
+
+            if (record.isOnline()) {
+                record.playtime += adjustment;
+                sessions.update(record);
+                if (PlaytimeConfig.ENABLE_REWARDS.get()) {
+                    scheduleNextReward(record, now);
+                }
+            } else {
+                leaderboard.remove(record.playtime, record.mostSigBits, record.leastSigBits);
+                record.playtime += adjustment;
+                leaderboard.insert(record.playtime, record.mostSigBits, record.leastSigBits);
+            }
+        }
+    }
+
+    // Only shards holding a player changed since the last compaction are rewritten, so the cost follows
+    // active players rather than everyone who ever joined.
+    public void compactData() {
+        if (compactionFailed) {
+            // The journal still holds what the failed write missed, rewrite everything before truncating it
+            compactionFailed = false;
+            dirtyShards.set(0, PlayerTable.SHARD_COUNT);
+        }
+        // The snapshot holds every change applied so far, including those a failed journal write missed
+        journalWriteFailed = false;
+        if (dirtyShards.isEmpty()) {
+            return;
         }
+
+        long sequence = journalSeq;
+        PlayerTable.Snapshot[] shards = players.snapshot(dirtyShards);
+        BitSet partialShards = new BitSet(PlayerTable.SHARD_COUNT);
+        for (int shard = dirtyShards.nextSetBit(0); shard >= 0; shard = dirtyShards.nextSetBit(shard + 1)) {
+            if (coldPlayersPerShard[shard] > 0) {
+                partialShards.set(shard);
+            }
+        }
+        PlaytimeStore target = store;
+
+        dirtyShards.clear();
+        journalRecordsSinceCompaction = 0;
+        submittedCompaction = sequence;
+        snapshotWriter.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                target.writeShards(sequence, shards, partialShards);
+                persistedCompaction = sequence;
+                PlaytimeMetrics.COMPACTION.record(System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                compactionFailed = true;
+                LOGGER.error("Failed to save playtime data", e);
+            }
+        });
     }
 
-    public void setPlaytimeMillis(UUID playerId, long millis) {
-        playtimes.put(playerId, millis);
+    public void awaitPendingSaves() {
+        snapshotWriter.awaitPendingWrites();
+    }
 
-        if (sessionStartTimes.containsKey(playerId)) {
-            sessionStartTimes.put(playerId, System.currentTimeMillis());
+    public void shutdown() {
+        if (!pendingLogins.isEmpty()) {
+            LOGGER.error("Dropping the sessions of {} evicted players whose records were still loading", pendingLogins.size());
         }
-        
         saveData();
+        if (store.isAppendOnly()) {
+            compactData();
+        }
+        awaitPendingSaves();
+
+        PlaytimeStore closing = store;
+        snapshotWriter.execute(closing::close);
+        awaitPendingSaves();
     }
- 
-    private static class PlaytimeData {
-        public Map<UUID, Long> playtimes;
-        public Map<UUID, Set<Integer>> givenRewards;
+
+    private void appendJournal(List<PlaytimeJournal.Record> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        // Every journaled change marks its player's shard dirty for the next compaction
+        for (PlaytimeJournal.Record record : records) {
+            dirtyShards.set(PlayerTable.shardOf(record.id.getMostSignificantBits()));
+        }
+
+        journalRecordsSinceCompaction += records.size();
+        PlaytimeStore target = store;
+        snapshotWriter.execute(() -> {
+            if (holdUnwritten(target, records)) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                target.write(records);
+                PlaytimeMetrics.JOURNAL_WRITE.record(System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                journalWriteFailed = true;
+                if (target.isAppendOnly()) {
+                    // The shards stay dirty, so the compaction forced by the next save persists what was missed
+                    LOGGER.error("Failed to save {} playtime changes", records.size(), e);
+                } else {
+                    // Nothing compacts a database, so the batch itself is kept and written again on the next save
+                    unwrittenStore = target;
+                    unwrittenRecords.addAll(records);
+                    LOGGER.error("Failed to save {} playtime changes, retrying on the next save", records.size(), e);
+                }
+            }
+        });
+    }
+
+    // Writer thread. Once a batch failed, later ones wait behind it: adding deltas is only right in order, and a
+    // replayed set must not undo what came after it.
+    private boolean holdUnwritten(PlaytimeStore target, List<PlaytimeJournal.Record> records) {
+        if (unwrittenRecords.isEmpty()) {
+            return false;
+        }
+        if (unwrittenStore != target) {
+            // Storage was reloaded since, the new store was read without these changes
+            LOGGER.error("Dropping {} playtime changes that were never saved to the previous storage", unwrittenRecords.size());
+            unwrittenRecords.clear();
+            unwrittenStore = null;
+            return false;
+        }
+        unwrittenRecords.addAll(records);
+        return true;
+    }
+
+    // The failed batches roll back as a whole, so writing them again cannot count anything twice
+    private void retryUnwrittenRecords() {
+        PlaytimeStore target = store;
+        snapshotWriter.execute(() -> {
+            if (unwrittenRecords.isEmpty() || unwrittenStore != target) {
+                return;
+            }
+
+            try {
+                target.write(unwrittenRecords);
+                LOGGER.info("Saved {} playtime changes that failed to save earlier", unwrittenRecords.size());
+                unwrittenRecords.clear();
+                unwrittenStore = null;
+                journalWriteFailed = false;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed again to save {} playtime changes, retrying on the next save", unwrittenRecords.size(), e);
+            }
+        });
+    }
+
+    public void loadData() {
+        store = createStore();
+
+        players.clear();
+        onlinePlayers.clear();
+        rewardQueue.clear();
+        leaderboard.clear();
+        nameIndex.clear();
+        sessions.clear();
+
+        coldPlayers.clear();
+        Arrays.fill(coldPlayersPerShard, 0);
+        recentPlayers.clear();
+        pendingLogins.clear();
+
+        journalRecordsSinceCompaction = 0;
+        dirtyShards.clear();
+        compactionFailed = false;
+        journalWriteFailed = false;
+        submittedCompaction = 0L;
+        persistedCompaction = 0L;
+        int historyDays = PlaytimeHistory.retainedDays();
+        serverHistory = historyDays > 0 ? new PlaytimeHistory(historyDays) : null;
+
+        long start = System.nanoTime();
+        int budget = PlaytimeConfig.MAX_CACHED_PLAYERS.get();
+        try {
+            if (store instanceof DatabasePlaytimeStore database && budget > 0) {
+                // The database answers for everyone else, so only what the budget keeps resident is read in full
+                journalSeq = database.load(players, dirtyShards, budget, new ColdPlayerLoader());
+            } else {
+                journalSeq = store.load(players, dirtyShards);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to load playtime data", e);
+        }
+        rewardSchedule = loadRewardSchedule();
+
+        networkMode = PlaytimeConfig.NETWORK_MODE.get();
+        if (networkMode && !(store instanceof DatabasePlaytimeStore)) {
+            LOGGER.warn("Network mode needs the SQL storage backend, running standalone");
+            networkMode = false;
+        }
+        if (networkMode) {
+            nodeId = PlaytimeConfig.NODE_ID.get();
+            if (nodeId.isEmpty()) {
+                nodeId = UUID.randomUUID().toString().substring(0, 8);
+            }
+            nextNetworkFlushAt = 0L;
+            nextNetworkRefreshAt = 0L;
+            LOGGER.info("Network mode enabled as node {}", nodeId);
+        }
+
+        players.forEach(record -> {
+            if (serverHistory != null && record.history != null) {
+                serverHistory.addAll(record.history);
+            }
+            leaderboard.insert(record.playtime, record.mostSigBits, record.leastSigBits);
+            recentPlayers.touch(record);
+            if (record.name != null) {
+                nameIndex.put(record.name, record.getId());
+            }
+        });
+
+        long elapsed = System.nanoTime() - start;
+        PlaytimeMetrics.LOAD.record(elapsed);
+        LOGGER.info("Loaded {} players in {} ms", players.size() + coldPlayers.size(), elapsed / 1_000_000L);
+
+        pendingRewards.clear();
+        restorePendingCommands();
+
+        if (store.needsFullWrite()) {
+            compactData();
+        }
+        evictColdRecords();
+        publishPlayerCounts();
+    }
+
+    // Players a partial load left in the database start out evicted, ranked and named but not resident
+    private final class ColdPlayerLoader implements DatabasePlaytimeStore.Remainder {
+        @Override
+        public void player(UUID playerId, String name, long playtime) {
+            long mostSigBits = playerId.getMostSignificantBits();
+            long leastSigBits = playerId.getLeastSignificantBits();
+            leaderboard.insert(playtime, mostSigBits, leastSigBits);
+            if (name != null) {
+                nameIndex.put(name, playerId);
+            }
+            coldPlayers.add(playerId);
+            coldPlayersPerShard[PlayerTable.shardOf(mostSigBits)]++;
+        }
+
+        @Override
+        public void serverDay(int day, int seconds) {
+            if (serverHistory != null) {
+                serverHistory.add(day, seconds);
+            }
+        }
+    }
+
+    private PlaytimeStore createStore() {
+        FilePlaytimeStore fileStore = new FilePlaytimeStore(configDir, PlaytimeConfig.STORAGE_FORMAT.get());
+        if (PlaytimeConfig.STORAGE_BACKEND.get() != PlaytimeConfig.StorageBackend.SQL) {
+            return fileStore;
+        }
+
+        String url = PlaytimeConfig.JDBC_URL.get();
+        if (url.isEmpty()) {
+            url = "jdbc:h2:file:" + configDir.resolve("playtimes").toAbsolutePath();
+        }
+        return new SqlPlaytimeStore(url, PlaytimeConfig.JDBC_USER.get(), PlaytimeConfig.JDBC_PASSWORD.get(), fileStore);
+    }
+
+    // Completes on the server thread, false if the player was evicted and could not be read back
+    public CompletableFuture<Boolean> setPlaytimeMillis(MinecraftServer server, UUID playerId, long millis) {
+        return preload(server, List.of(playerId)).thenApply(loaded -> {
+            PlayerRecord record = resolve(playerId);
+            if (record == null) {
+                return false;
+            }
+            List<PlaytimeJournal.Record> records = new ArrayList<>(3);
+            setPlaytime(record, millis, System.currentTimeMillis(), records);
+            appendJournal(records);
+            return true;
+        });
+    }
+
+    private void setPlaytime(PlayerRecord record, long millis, long now, List<PlaytimeJournal.Record> out) {
+        if (!record.isOnline()) {
+            leaderboard.remove(record.playtime, record.mostSigBits, record.leastSigBits);
+            leaderboard.insert(millis, record.mostSigBits, record.leastSigBits);
+        }
+        if (record.isOnline()) {
+            // The session so far was played whatever the new total, flush it to the history like a save does
+            foldActiveTime(record, now);
+            recordHistory(record, record.sessionStart, now, out);
+            record.sessionStart = now;
+        }
+        record.playtime = millis;
+        // Active time is part of the total, so lowering the total can lower it too
+        record.activeTime = Math.min(record.activeTime, millis);
+
+        if (record.isOnline()) {
+            sessions.update(record);
+
+            if (PlaytimeConfig.ENABLE_REWARDS.get()) {
+                scheduleNextReward(record, now);
+            }
+        }
+
+        out.add(PlaytimeJournal.Record.setPlaytime(++journalSeq, record.getId(), millis, record.activeTime));
+    }
+
+    // Parsing runs off-thread; the merge happens on the server thread, one batch per task
+    public CompletableFuture<VanillaStatsImporter.Summary> importVanillaStats(MinecraftServer server,
+                                                                              VanillaStatsImporter.Policy policy,
+                                                                              IntConsumer progress) {
+        if (importRunning) {
+            return CompletableFuture.failedFuture(new IllegalStateException("An import is already running"));
+        }
+        importRunning = true;
+
+        Path statsDir = server.getWorldPath(LevelResource.PLAYER_STATS_DIR);
+        return VanillaStatsImporter.read(statsDir, progress)
+                .thenComposeAsync(result -> mergeImported(server, result, policy, 0, 0), server)
+                .whenCompleteAsync((summary, e) -> importRunning = false, server);
+    }
+
+    // Each batch loads only its own evicted players, and the cache budget is enforced again before the next one,
+    // so an import of every player who ever joined neither stalls a tick nor keeps them all resident
+    private CompletableFuture<VanillaStatsImporter.Summary> mergeImported(MinecraftServer server,
+                                                                         VanillaStatsImporter.Result result,
+                                                                         VanillaStatsImporter.Policy policy,
+                                                                         int from, int changed) {
+        List<VanillaStatsImporter.Entry> entries = result.entries();
+        if (from >= entries.size()) {
+            return CompletableFuture.completedFuture(
+                    new VanillaStatsImporter.Summary(result.files(), result.unreadable(), entries.size(), changed));
+        }
+
+        List<VanillaStatsImporter.Entry> batch = entries.subList(from, Math.min(entries.size(), from + IMPORT_BATCH_SIZE));
+        List<UUID> playerIds = new ArrayList<>(batch.size());
+        for (VanillaStatsImporter.Entry entry : batch) {
+            playerIds.add(entry.playerId());
+        }
+
+        return preload(server, playerIds).thenComposeAsync(loaded -> {
+            int batchChanged = mergeBatch(server, batch, policy);
+            compactAndEvict();
+            // Merged records can only be evicted once the compaction holding them has been written
+            CompletableFuture<Void> evicted = persistedCompaction == submittedCompaction
+                    ? CompletableFuture.completedFuture(null)
+                    : afterPendingWrites(server).thenRun(this::evictColdRecords);
+            return evicted.thenCompose(ignored -> mergeImported(server, result, policy, from + batch.size(), changed + batchChanged));
+        }, server);
+    }
+
+    // Completes on the server thread once everything queued on the writer so far has run
+    private CompletableFuture<Void> afterPendingWrites(MinecraftServer server) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        snapshotWriter.execute(() -> server.execute(() -> done.complete(null)));
+        return done;
+    }
+
+    private int mergeBatch(MinecraftServer server, List<VanillaStatsImporter.Entry> batch,
+                           VanillaStatsImporter.Policy policy) {
+        long now = System.currentTimeMillis();
+        GameProfileCache profiles = server.getProfileCache();
+        List<PlaytimeJournal.Record> records = new ArrayList<>();
+        int changed = 0;
+
+        for (VanillaStatsImporter.Entry entry : batch) {
+            PlayerRecord record = resolve(entry.playerId());
+            if (record == null) {
+                continue;
+            }
+            long current = record.playtimeAt(now);
+            long millis = policy.merge(current, entry.playtime());
+            if (millis != current) {
+                setPlaytime(record, millis, now, records);
+                changed++;
+            }
+
+            // Stats files carry no names, take them from the server's profile cache for the leaderboard
+            if (record.name == null && profiles != null) {
+                profiles.get(entry.playerId()).ifPresent(profile -> records.add(rename(record, profile.getName())));
+            }
+        }
+
+        appendJournal(records);
+        return changed;
+    }
+
+    private record ScheduledReward(long dueAt, PlayerRecord record) {
+    }
+
+    // Sessions of an evicted player whose record is still being read back: those that ended meanwhile, and the
+    // open one if the player is still connected
+    private static final class PendingLogin {
+        private final MinecraftServer server;
+        private final List<ClosedSession> closedSessions = new ArrayList<>(1);
+        private ServerPlayer player;
+        private long loginAt;
+        // Time per dimension of the open session, apart from the current stay since dimensionSince
+        private int dimension;
+        private long dimensionSince;
+        private long[] dimensionTimes;
+        private boolean loading;
+
+        private PendingLogin(MinecraftServer server) {
+            this.server = server;
+        }
+
+        private void flushDimension(long now) {
+            if (dimension != RewardSchedule.ANY_DIMENSION && now > dimensionSince) {
+                if (dimension >= dimensionTimes.length) {
+                    dimensionTimes = Arrays.copyOf(dimensionTimes, dimension + 1);
+                }
+                dimensionTimes[dimension] += now - dimensionSince;
+            }
+            dimensionSince = now;
+        }
+    }
+
+    private record ClosedSession(long loginAt, long logoutAt, long[] dimensionTimes) {
     }
-}
\ No newline at end of file
+}
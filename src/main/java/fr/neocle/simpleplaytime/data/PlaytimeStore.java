@@ -0,0 +1,34 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Persistence backend for the player table. load() and the first registerRewards() run on the server thread while
+// loading, before any write is queued for the store; everything else runs on the writer thread.
+public interface PlaytimeStore {
+    // Marks the shards whose stored base is older than what was loaded, returns the last journal sequence.
+    long load(PlayerTable table, BitSet dirtyShards) throws IOException;
+
+    void write(List<PlaytimeJournal.Record> records) throws IOException;
+
+    // Rewrites the non-null shards; every change up to the sequence is covered by them or by earlier writes.
+    // Partial shards are missing evicted players, whose stored state must be kept.
+    void writeShards(long sequence, PlayerTable.Snapshot[] shards, BitSet partialShards) throws IOException;
+
+    // Reads back evicted players; unknown ids are left out of the result.
+    List<PlayerRecord> loadPlayers(Collection<UUID> playerIds) throws IOException;
+
+    // Returns the bit slot of every registered reward id, registering the ids it does not know yet.
+    // An empty registry takes the legacy slots, so rewards granted before ids existed keep their meaning.
+    Map<String, Integer> registerRewards(Map<String, Integer> legacySlots) throws IOException;
+
+    boolean needsFullWrite();
+
+    boolean isAppendOnly();
+
+    void close();
+}
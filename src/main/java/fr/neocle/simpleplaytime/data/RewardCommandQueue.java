@@ -0,0 +1,96 @@
+package fr.neocle.simpleplaytime.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Reward commands waiting to run, drained under a per-tick budget. A single FIFO keeps every player's commands
+// in the order their rewards were reached. Pending commands belong to this server, so they are saved next to the
+// config whatever the storage backend.
+public class RewardCommandQueue {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    public record Entry(UUID playerId, int rewardSlot, String command, long queuedAt) {
+    }
+
+    private static class PendingCommands {
+        List<Entry> commands = new ArrayList<>();
+    }
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private boolean dirty;
+
+    public void add(Entry entry) {
+        entries.add(entry);
+        dirty = true;
+        PlaytimeMetrics.rewardCommandQueueDepth(entries.size());
+    }
+
+    public Entry poll() {
+        Entry entry = entries.poll();
+        if (entry != null) {
+            dirty = true;
+            PlaytimeMetrics.rewardCommandQueueDepth(entries.size());
+        }
+        return entry;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        dirty = true;
+        PlaytimeMetrics.rewardCommandQueueDepth(0);
+    }
+
+    // The entries if they changed since the last snapshot, otherwise null
+    List<Entry> snapshotIfChanged() {
+        if (!dirty) {
+            return null;
+        }
+        dirty = false;
+        return List.copyOf(entries);
+    }
+
+    static void write(Path file, List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+
+        PendingCommands pending = new PendingCommands();
+        pending.commands = entries;
+        Files.createDirectories(file.getParent());
+        FilePlaytimeStore.writeAtomically(file, GSON.toJson(pending).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static List<Entry> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            PendingCommands pending = GSON.fromJson(reader, PendingCommands.class);
+            return pending != null && pending.commands != null ? pending.commands : List.of();
+        } catch (JsonParseException e) {
+            throw new IOException("Failed to read " + file.getFileName(), e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class RewardRetryQueue {
+    private static final long MAX_BACKOFF_MILLIS = 60L * 60 * 1000;
+
+    public record Entry(UUID playerId, int rewardSlot, int attempts, long nextAttemptAt, boolean exhausted) {
+    }
+
+    private final Map<UUID, Map<Integer, Entry>> entries = new HashMap<>();
+
+    public Entry recordFailure(UUID playerId, int rewardSlot, long now, int maxAttempts, long baseDelayMillis) {
+        Map<Integer, Entry> playerEntries = entries.computeIfAbsent(playerId, id -> new HashMap<>());
+        Entry previous = playerEntries.get(rewardSlot);
+        int attempts = previous == null ? 1 : previous.attempts() + 1;
+
+        long delay = baseDelayMillis << Math.min(attempts - 1, 20);
+        Entry entry = new Entry(playerId, rewardSlot, attempts, now + Math.min(delay, MAX_BACKOFF_MILLIS), attempts >= maxAttempts);
+        playerEntries.put(rewardSlot, entry);
+        return entry;
+    }
+
+    public void recordSuccess(UUID playerId, int rewardSlot) {
+        Map<Integer, Entry> playerEntries = entries.get(playerId);
+        if (playerEntries != null && playerEntries.remove(rewardSlot) != null && playerEntries.isEmpty()) {
+            entries.remove(playerId);
+        }
+    }
+
+    public boolean isBlocked(UUID playerId, int rewardSlot, long now) {
+        Map<Integer, Entry> playerEntries = entries.get(playerId);
+        if (playerEntries == null) {
+            return false;
+        }
+
+        Entry entry = playerEntries.get(rewardSlot);
+        return entry != null && (entry.exhausted() || entry.nextAttemptAt() > now);
+    }
+
+    public long nextAttemptAt(UUID playerId) {
+        Map<Integer, Entry> playerEntries = entries.get(playerId);
+        if (playerEntries == null) {
+            return Long.MAX_VALUE;
+        }
+
+        long next = Long.MAX_VALUE;
+        for (Entry entry : playerEntries.values()) {
+            if (!entry.exhausted()) {
+                next = Math.min(next, entry.nextAttemptAt());
+            }
+        }
+        return next;
+    }
+
+    public List<Entry> getEntries() {
+        List<Entry> result = new ArrayList<>();
+        for (Map<Integer, Entry> playerEntries : entries.values()) {
+            result.addAll(playerEntries.values());
+        }
+        return result;
+    }
+
+    public Set<UUID> flush() {
+        Set<UUID> players = Set.copyOf(entries.keySet());
+        entries.clear();
+        return players;
+    }
+}
@@ -0,0 +1,260 @@
+package fr.neocle.simpleplaytime.data;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+// Rewards are identified by a hash of what they grant and stored under a bit slot from the reward registry,
+// so reordering, inserting or re-timing tiers in the config never changes what players are recorded as having.
+public class RewardSchedule {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long MILLIS_PER_HOUR = 1000L * 60 * 60;
+    private static final String ACTIVE_PREFIX = "active:";
+    private static final String DIMENSION_PREFIX = "dimension:";
+    public static final int ANY_DIMENSION = -1;
+
+    public static final RewardSchedule EMPTY = new RewardSchedule(new Reward[0]);
+
+    // Active rewards count time the player was not AFK, dimension rewards the time spent in one dimension
+    // (an interned DimensionIds id); the others count total time
+    public record Reward(String id, int slot, long requiredMillis, boolean active, int dimension, String type,
+                         String value) {
+    }
+
+    public record Definition(int configIndex, String id, long requiredMillis, boolean active, int dimension,
+                             String type, String value) {
+    }
+
+    // A player's time on every clock a reward can count, with the current session included
+    public record Progress(long playtime, long activeTime, boolean activeClockRunning, long[] dimensionTimes,
+                           int dimension) {
+        long dimensionTime(int id) {
+            return id < dimensionTimes.length ? dimensionTimes[id] : 0L;
+        }
+    }
+
+    private final Reward[] rewards;
+    private final Reward[] totalRewards;
+    private final Reward[] activeRewards;
+    private final Reward[][] dimensionRewards;
+
+    private RewardSchedule(Reward[] rewards) {
+        this.rewards = rewards;
+        this.totalRewards = Arrays.stream(rewards)
+                .filter(reward -> !reward.active() && reward.dimension() == ANY_DIMENSION)
+                .toArray(Reward[]::new);
+        this.activeRewards = Arrays.stream(rewards).filter(Reward::active).toArray(Reward[]::new);
+
+        int dimensions = Arrays.stream(rewards).mapToInt(Reward::dimension).max().orElse(ANY_DIMENSION) + 1;
+        this.dimensionRewards = new Reward[dimensions][];
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            int id = dimension;
+            dimensionRewards[dimension] = Arrays.stream(rewards)
+                    .filter(reward -> reward.dimension() == id)
+                    .toArray(Reward[]::new);
+        }
+    }
+
+    public static List<Definition> parse(List<? extends String> rewardConfigs) {
+        List<Definition> parsed = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+
+        for (int i = 0; i < rewardConfigs.size(); i++) {
+            String config = rewardConfigs.get(i);
+            String tier = config;
+            boolean active = false;
+            int dimension = ANY_DIMENSION;
+            if (hasPrefix(tier, ACTIVE_PREFIX)) {
+                active = true;
+                tier = tier.substring(ACTIVE_PREFIX.length());
+            } else if (hasPrefix(tier, DIMENSION_PREFIX)) {
+                // Dimension keys are namespace:path, so they take the next two fields
+                String[] scoped = tier.substring(DIMENSION_PREFIX.length()).split(":", 3);
+                if (scoped.length < 3) {
+                    LOGGER.warn("Invalid reward config (expected dimension:namespace:path:hours:type:value): {}", config);
+                    continue;
+                }
+                dimension = DimensionIds.intern(scoped[0] + ":" + scoped[1]);
+                tier = scoped[2];
+            }
+
+            String[] parts = tier.split(":", 3);
+            if (parts.length < 3) {
+                LOGGER.warn("Invalid reward config (expected [active:|dimension:<dimension>:]hours:type:value): {}", config);
+                continue;
+            }
+
+            int requiredHours;
+            try {
+                requiredHours = Integer.parseInt(parts[0]);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid reward config (bad number): {}", config);
+                continue;
+            }
+
+            String type = parts[1].toLowerCase();
+            switch (type) {
+                case "group", "permission", "command" -> {
+                    // The threshold and clock are left out so re-timing a tier keeps its id; repeats of a reward are numbered
+                    String key = type + ":" + parts[2];
+                    int occurrence = occurrences.merge(key, 1, Integer::sum);
+                    String id = idOf(occurrence == 1 ? key : key + "#" + occurrence);
+                    parsed.add(new Definition(i, id, requiredHours * MILLIS_PER_HOUR, active, dimension, type, parts[2]));
+                }
+                default -> LOGGER.warn("Unknown reward type: {}", type);
+            }
+        }
+        return parsed;
+    }
+
+    private static boolean hasPrefix(String config, String prefix) {
+        return config.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    // Before ids existed rewards were stored under their index in the config list
+    public static Map<String, Integer> legacySlots(List<Definition> definitions) {
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        for (Definition definition : definitions) {
+            slots.put(definition.id(), definition.configIndex());
+        }
+        return slots;
+    }
+
+    // Slots for the ids missing from a registry: the legacy slots if it is empty, otherwise the next free ones
+    static Map<String, Integer> newSlots(Map<String, Integer> registered, Map<String, Integer> legacySlots) {
+        Map<String, Integer> added = new LinkedHashMap<>();
+        if (registered.isEmpty()) {
+            added.putAll(legacySlots);
+            return added;
+        }
+
+        int next = registered.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        for (String id : legacySlots.keySet()) {
+            if (!registered.containsKey(id)) {
+                added.put(id, next++);
+            }
+        }
+        return added;
+    }
+
+    public static RewardSchedule compile(List<Definition> definitions, Map<String, Integer> slots) {
+        List<Reward> compiled = new ArrayList<>(definitions.size());
+        for (Definition definition : definitions) {
+            Integer slot = slots.get(definition.id());
+            if (slot == null) {
+                LOGGER.warn("Reward {}:{} has no registered slot, skipping it", definition.type(), definition.value());
+                continue;
+            }
+            compiled.add(new Reward(definition.id(), slot, definition.requiredMillis(), definition.active(),
+                    definition.dimension(), definition.type(), definition.value()));
+        }
+
+        compiled.sort(Comparator.comparingLong(Reward::requiredMillis).thenComparingInt(Reward::slot));
+        return new RewardSchedule(compiled.toArray(new Reward[0]));
+    }
+
+    public Reward[] getRewards() {
+        return rewards;
+    }
+
+    public Reward getReward(int slot) {
+        for (Reward reward : rewards) {
+            if (reward.slot() == slot) {
+                return reward;
+            }
+        }
+        return null;
+    }
+
+    // Slots whose tier was added, removed, re-timed or moved to another clock since the previous schedule
+    public int[] changedSlots(RewardSchedule previous) {
+        BitSet changed = new BitSet();
+        Set<Integer> current = new HashSet<>();
+        for (Reward reward : rewards) {
+            current.add(reward.slot());
+            Reward old = previous.getReward(reward.slot());
+            if (old == null || old.requiredMillis() != reward.requiredMillis() || old.active() != reward.active()
+                    || old.dimension() != reward.dimension()) {
+                changed.set(reward.slot());
+            }
+        }
+        for (Reward old : previous.rewards) {
+            if (!current.contains(old.slot())) {
+                changed.set(old.slot());
+            }
+        }
+        return changed.stream().toArray();
+    }
+
+    // Appends the rewards unlocked by this progress that are not settled yet, grouped by clock and each group
+    // in threshold order
+    public void collectDue(Progress progress, IntPredicate settled, List<Reward> out) {
+        collectDue(totalRewards, progress.playtime(), settled, out);
+        collectDue(activeRewards, progress.activeTime(), settled, out);
+        for (int dimension = 0; dimension < dimensionRewards.length; dimension++) {
+            collectDue(dimensionRewards[dimension], progress.dimensionTime(dimension), settled, out);
+        }
+    }
+
+    private static void collectDue(Reward[] rewards, long millis, IntPredicate settled, List<Reward> out) {
+        for (Reward reward : rewards) {
+            if (reward.requiredMillis() > millis) {
+                break;
+            }
+            if (!settled.test(reward.slot())) {
+                out.add(reward);
+            }
+        }
+    }
+
+    // Time until the next unsettled reward can unlock, or Long.MAX_VALUE if none can. Active and dimension time
+    // grow no faster than wall time, so their tiers are due no earlier than their remaining time, and not at all
+    // while AFK or in another dimension.
+    public long nextDueIn(Progress progress, IntPredicate settled) {
+        long dueIn = remaining(totalRewards, progress.playtime(), settled);
+        if (progress.activeClockRunning()) {
+            dueIn = Math.min(dueIn, remaining(activeRewards, progress.activeTime(), settled));
+        }
+        int dimension = progress.dimension();
+        if (dimension >= 0 && dimension < dimensionRewards.length) {
+            dueIn = Math.min(dueIn, remaining(dimensionRewards[dimension], progress.dimensionTime(dimension), settled));
+        }
+        return dueIn;
+    }
+
+    private static long remaining(Reward[] rewards, long millis, IntPredicate settled) {
+        for (Reward reward : rewards) {
+            if (!settled.test(reward.slot())) {
+                return Math.max(0L, reward.requiredMillis() - millis);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static String idOf(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder id = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                id.append(String.format("%02x", digest[i]));
+            }
+            return id.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
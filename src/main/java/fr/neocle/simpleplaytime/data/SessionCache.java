@@ -0,0 +1,87 @@
+package fr.neocle.simpleplaytime.data;
+
+import fr.neocle.simpleplaytime.util.TimeFormatter;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Immutable views of the online players' sessions, replaced from the server thread whenever a record changes.
+// Reads are lock-free and safe from any thread; a read never sees a half-updated playtime.
+public class SessionCache {
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+
+    private static final class Session {
+        final long playtime;
+        final long sessionStart;
+        final long loginAt;
+        // Formatting is the expensive part of a read, so each view keeps the string of the last second asked for
+        volatile Formatted formatted;
+
+        Session(long playtime, long sessionStart, long loginAt) {
+            this.playtime = playtime;
+            this.sessionStart = sessionStart;
+            this.loginAt = loginAt;
+        }
+
+        long total(long now) {
+            return playtime + Math.max(0L, now - sessionStart);
+        }
+    }
+
+    private record Formatted(long second, String text) {
+    }
+
+    void start(PlayerRecord record, long loginAt) {
+        sessions.put(record.getId(), new Session(record.playtime, record.sessionStart, loginAt));
+    }
+
+    // Republishes an online record after its playtime or session start moved, keeping the login time
+    void update(PlayerRecord record) {
+        UUID playerId = record.getId();
+        Session previous = sessions.get(playerId);
+        long loginAt = previous != null ? previous.loginAt : record.sessionStart;
+        sessions.put(playerId, new Session(record.playtime, record.sessionStart, loginAt));
+    }
+
+    void remove(UUID playerId) {
+        sessions.remove(playerId);
+    }
+
+    void clear() {
+        sessions.clear();
+    }
+
+    public boolean isOnline(UUID playerId) {
+        return sessions.containsKey(playerId);
+    }
+
+    // Total playtime including the current session, or -1 if the player is not online
+    public long getPlaytime(UUID playerId, long now) {
+        Session session = sessions.get(playerId);
+        return session != null ? session.total(now) : -1L;
+    }
+
+    // Time since login, or -1 if the player is not online
+    public long getSessionTime(UUID playerId, long now) {
+        Session session = sessions.get(playerId);
+        return session != null ? Math.max(0L, now - session.loginAt) : -1L;
+    }
+
+    // Formatted total playtime, or null if the player is not online
+    public String getFormattedPlaytime(UUID playerId, long now) {
+        Session session = sessions.get(playerId);
+        if (session == null) {
+            return null;
+        }
+
+        long total = session.total(now);
+        long second = total / 1000L;
+        Formatted formatted = session.formatted;
+        if (formatted == null || formatted.second() != second) {
+            formatted = new Formatted(second, TimeFormatter.formatPlaytime(total));
+            session.formatted = formatted;
+        }
+        return formatted.text();
+    }
+}
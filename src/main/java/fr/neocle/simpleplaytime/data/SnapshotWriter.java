@@ -0,0 +1,36 @@
+package fr.neocle.simpleplaytime.data;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SnapshotWriter {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SimplePlaytime-Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public void awaitPendingWrites() {
+        try {
+            executor.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("Failed to wait for pending playtime saves", e);
+        }
+    }
+}
@@ -0,0 +1,635 @@
+package fr.neocle.simpleplaytime.data;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+public class SqlPlaytimeStore implements DatabasePlaytimeStore {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int MAX_HISTORY_DAYS = 365;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final FilePlaytimeStore legacyStore;
+    private Connection connection;
+    private boolean imported;
+
+    public SqlPlaytimeStore(String url, String user, String password, FilePlaytimeStore legacyStore) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.legacyStore = legacyStore;
+    }
+
+    @Override
+    public long load(PlayerTable table, BitSet dirtyShards) throws IOException {
+        return load(table, dirtyShards, -1, null);
+    }
+
+    // A negative count reads every player in full
+    @Override
+    public long load(PlayerTable table, BitSet dirtyShards, int recentPlayers, Remainder remainder) throws IOException {
+        try {
+            Connection conn = getConnection();
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS playtimes ("
+                        + "id UUID PRIMARY KEY, "
+                        + "name VARCHAR(16), "
+                        + "playtime BIGINT NOT NULL DEFAULT 0, "
+                        + "active_time BIGINT NOT NULL DEFAULT 0)");
+                statement.execute("ALTER TABLE playtimes ADD COLUMN IF NOT EXISTS active_time BIGINT NOT NULL DEFAULT 0");
+                statement.execute("CREATE INDEX IF NOT EXISTS playtimes_playtime ON playtimes (playtime DESC, id)");
+                statement.execute("CREATE TABLE IF NOT EXISTS rewards ("
+                        + "id UUID NOT NULL, "
+                        + "reward INT NOT NULL, "
+                        + "PRIMARY KEY (id, reward))");
+                statement.execute("CREATE TABLE IF NOT EXISTS reward_claims ("
+                        + "id UUID NOT NULL, "
+                        + "reward INT NOT NULL, "
+                        + "node VARCHAR(64), "
+                        + "claimed_at BIGINT NOT NULL DEFAULT 0, "
+                        + "PRIMARY KEY (id, reward))");
+                statement.execute("CREATE TABLE IF NOT EXISTS playtime_days ("
+                        + "id UUID NOT NULL, "
+                        + "day INT NOT NULL, "
+                        + "seconds INT NOT NULL DEFAULT 0, "
+                        + "PRIMARY KEY (id, day))");
+                statement.execute("CREATE TABLE IF NOT EXISTS playtime_dimensions ("
+                        + "id UUID NOT NULL, "
+                        + "dimension VARCHAR(255) NOT NULL, "
+                        + "playtime BIGINT NOT NULL DEFAULT 0, "
+                        + "PRIMARY KEY (id, dimension))");
+                statement.execute("CREATE TABLE IF NOT EXISTS reward_slots ("
+                        + "reward_id VARCHAR(64) PRIMARY KEY, "
+                        + "slot INT NOT NULL UNIQUE)");
+                // Rewards granted before network mode count as claimed
+                statement.execute("INSERT INTO reward_claims (id, reward, node) "
+                        + "SELECT r.id, r.reward, 'import' FROM rewards r "
+                        + "WHERE NOT EXISTS (SELECT 1 FROM reward_claims c WHERE c.id = r.id AND c.reward = r.reward)");
+            }
+            conn.commit();
+
+            boolean empty;
+            try (Statement statement = conn.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM playtimes")) {
+                result.next();
+                empty = result.getLong(1) == 0;
+            }
+
+            if (empty && legacyStore != null && legacyStore.hasData()) {
+                LOGGER.info("Importing file playtime data into the SQL store");
+                legacyStore.load(table, dirtyShards);
+                dirtyShards.set(0, PlayerTable.SHARD_COUNT);
+                imported = true;
+                return 0L;
+            }
+
+            int firstDay = firstKeptDay();
+            try (PreparedStatement prune = conn.prepareStatement("DELETE FROM playtime_days WHERE day < ?")) {
+                // Other servers may keep a different number of days, so only what no setting can keep goes
+                prune.setInt(1, PlaytimeHistory.dayOf(System.currentTimeMillis()) - MAX_HISTORY_DAYS);
+                prune.executeUpdate();
+            }
+            if (recentPlayers >= 0) {
+                loadRecent(conn, table, firstDay, recentPlayers, remainder);
+                conn.commit();
+                return 0L;
+            }
+
+            try (Statement statement = conn.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT id, name, playtime, active_time FROM playtimes")) {
+                while (result.next()) {
+                    PlayerRecord record = table.getOrCreate(result.getObject(1, UUID.class));
+                    record.name = result.getString(2);
+                    record.playtime = result.getLong(3);
+                    record.activeTime = result.getLong(4);
+                }
+            }
+
+            try (Statement statement = conn.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT id, reward FROM rewards")) {
+                while (result.next()) {
+                    table.getOrCreate(result.getObject(1, UUID.class)).addReward(result.getInt(2));
+                }
+            }
+
+            try (Statement statement = conn.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT id, dimension, playtime FROM playtime_dimensions")) {
+                while (result.next()) {
+                    table.getOrCreate(result.getObject(1, UUID.class))
+                            .addDimensionTime(DimensionIds.intern(result.getString(2)), result.getLong(3));
+                }
+            }
+
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "SELECT id, day, seconds FROM playtime_days WHERE day >= ? ORDER BY id, day")) {
+                statement.setInt(1, firstDay);
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        table.getOrCreate(result.getObject(1, UUID.class)).addHistory(result.getInt(2), result.getInt(3));
+                    }
+                }
+            }
+            conn.commit();
+            return 0L;
+        } catch (SQLException e) {
+            throw new IOException("Failed to load playtimes from " + url, e);
+        }
+    }
+
+    @Override
+    public void write(List<PlaytimeJournal.Record> records) throws IOException {
+        // Total and active time, as values or as deltas
+        Map<UUID, long[]> playtimes = new LinkedHashMap<>();
+        Map<UUID, long[]> deltas = new LinkedHashMap<>();
+        Map<UUID, String> names = new LinkedHashMap<>();
+        List<PlaytimeJournal.Record> rewards = new ArrayList<>();
+        List<PlaytimeJournal.Record> days = new ArrayList<>();
+        List<PlaytimeJournal.Record> dimensions = new ArrayList<>();
+
+        for (PlaytimeJournal.Record record : records) {
+            switch (record.op) {
+                case PlaytimeJournal.OP_SET_PLAYTIME -> {
+                    playtimes.put(record.id, new long[]{record.playtime, record.activeTime});
+                    deltas.remove(record.id);
+                }
+                case PlaytimeJournal.OP_ADD_PLAYTIME -> {
+                    long[] sums = playtimes.containsKey(record.id)
+                            ? playtimes.get(record.id)
+                            : deltas.computeIfAbsent(record.id, id -> new long[2]);
+                    sums[0] += record.playtime;
+                    sums[1] += record.activeTime;
+                }
+                case PlaytimeJournal.OP_SET_NAME -> names.put(record.id, record.name);
+                case PlaytimeJournal.OP_GRANT_REWARD -> rewards.add(record);
+                case PlaytimeJournal.OP_ADD_DAY -> days.add(record);
+                case PlaytimeJournal.OP_ADD_DIMENSION -> dimensions.add(record);
+                default -> LOGGER.warn("Unknown playtime journal operation: {}", record.op);
+            }
+        }
+
+        try {
+            Connection conn = getConnection();
+            try (PreparedStatement upsertPlaytime = conn.prepareStatement(
+                    "MERGE INTO playtimes (id, playtime, active_time) KEY (id) VALUES (?, ?, ?)");
+                 PreparedStatement addPlaytime = conn.prepareStatement(
+                         "MERGE INTO playtimes t USING (VALUES (CAST(? AS UUID), CAST(? AS BIGINT), CAST(? AS BIGINT))) "
+                                 + "s (id, delta, active_delta) ON t.id = s.id "
+                                 + "WHEN MATCHED THEN UPDATE SET playtime = t.playtime + s.delta, "
+                                 + "active_time = t.active_time + s.active_delta "
+                                 + "WHEN NOT MATCHED THEN INSERT (id, playtime, active_time) VALUES (s.id, s.delta, s.active_delta)");
+                 PreparedStatement upsertName = conn.prepareStatement(
+                         "MERGE INTO playtimes (id, name) KEY (id) VALUES (?, ?)");
+                 PreparedStatement upsertReward = conn.prepareStatement(
+                         "MERGE INTO rewards (id, reward) KEY (id, reward) VALUES (?, ?)");
+                 PreparedStatement addDay = conn.prepareStatement(
+                         "MERGE INTO playtime_days t USING (VALUES (CAST(? AS UUID), CAST(? AS INT), CAST(? AS INT))) "
+                                 + "s (id, day, seconds) ON t.id = s.id AND t.day = s.day "
+                                 + "WHEN MATCHED THEN UPDATE SET seconds = t.seconds + s.seconds "
+                                 + "WHEN NOT MATCHED THEN INSERT (id, day, seconds) VALUES (s.id, s.day, s.seconds)");
+                 PreparedStatement addDimension = conn.prepareStatement(
+                         "MERGE INTO playtime_dimensions t USING (VALUES (CAST(? AS UUID), CAST(? AS VARCHAR(255)), "
+                                 + "CAST(? AS BIGINT))) s (id, dimension, delta) ON t.id = s.id AND t.dimension = s.dimension "
+                                 + "WHEN MATCHED THEN UPDATE SET playtime = t.playtime + s.delta "
+                                 + "WHEN NOT MATCHED THEN INSERT (id, dimension, playtime) VALUES (s.id, s.dimension, s.delta)")) {
+                for (Map.Entry<UUID, long[]> entry : playtimes.entrySet()) {
+                    upsertPlaytime.setObject(1, entry.getKey());
+                    upsertPlaytime.setLong(2, entry.getValue()[0]);
+                    upsertPlaytime.setLong(3, entry.getValue()[1]);
+                    upsertPlaytime.addBatch();
+                }
+                for (Map.Entry<UUID, long[]> entry : deltas.entrySet()) {
+                    addPlaytime.setObject(1, entry.getKey());
+                    addPlaytime.setLong(2, entry.getValue()[0]);
+                    addPlaytime.setLong(3, entry.getValue()[1]);
+                    addPlaytime.addBatch();
+                }
+                for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                    upsertName.setObject(1, entry.getKey());
+                    upsertName.setString(2, entry.getValue());
+                    upsertName.addBatch();
+                }
+                for (PlaytimeJournal.Record record : rewards) {
+                    upsertReward.setObject(1, record.id);
+                    upsertReward.setInt(2, record.reward);
+                    upsertReward.addBatch();
+                }
+                for (PlaytimeJournal.Record record : days) {
+                    addDay.setObject(1, record.id);
+                    addDay.setInt(2, record.day);
+                    addDay.setInt(3, record.seconds);
+                    addDay.addBatch();
+                }
+                for (PlaytimeJournal.Record record : dimensions) {
+                    addDimension.setObject(1, record.id);
+                    addDimension.setString(2, record.dimension);
+                    addDimension.setLong(3, record.playtime);
+                    addDimension.addBatch();
+                }
+
+                upsertPlaytime.executeBatch();
+                addPlaytime.executeBatch();
+                upsertName.executeBatch();
+                upsertReward.executeBatch();
+                addDay.executeBatch();
+                addDimension.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to write " + records.size() + " playtime changes", e);
+        }
+    }
+
+    @Override
+    public void writeShards(long sequence, PlayerTable.Snapshot[] shards, BitSet partialShards) throws IOException {
+        List<PlaytimeJournal.Record> records = new ArrayList<>();
+        for (PlayerTable.Snapshot snapshot : shards) {
+            if (snapshot == null) {
+                continue;
+            }
+
+            for (int i = 0; i < snapshot.size(); i++) {
+                UUID id = new UUID(snapshot.mostSigBits()[i], snapshot.leastSigBits()[i]);
+                records.add(PlaytimeJournal.Record.setPlaytime(sequence, id, snapshot.playtimes()[i],
+                        snapshot.activeTimes()[i]));
+                if (snapshot.names()[i] != null) {
+                    records.add(PlaytimeJournal.Record.setName(sequence, id, snapshot.names()[i]));
+                }
+
+                long[] words = snapshot.rewards()[i];
+                for (int word = 0; word < words.length; word++) {
+                    for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+                        records.add(PlaytimeJournal.Record.grantReward(sequence, id, word * 64 + Long.numberOfTrailingZeros(bits)));
+                    }
+                }
+
+                // Only written in full into an empty database, so days and dimension times can be added
+                long[] dimensionTimes = snapshot.dimensionTimes()[i];
+                for (int dimension = 0; dimension < dimensionTimes.length; dimension++) {
+                    if (dimensionTimes[dimension] != 0L) {
+                        records.add(PlaytimeJournal.Record.addDimension(sequence, id, DimensionIds.key(dimension),
+                                dimensionTimes[dimension]));
+                    }
+                }
+
+                int[] history = snapshot.histories()[i];
+                if (history != null) {
+                    int firstDay = snapshot.historyEnds()[i] - history.length + 1;
+                    for (int d = 0; d < history.length; d++) {
+                        if (history[d] != 0) {
+                            records.add(PlaytimeJournal.Record.addDay(sequence, id, firstDay + d, history[d]));
+                        }
+                    }
+                }
+            }
+        }
+
+        write(records);
+
+        if (imported) {
+            imported = false;
+            legacyStore.markMigrated();
+        }
+    }
+
+    // Players are ranked by the last day they have history for, there is no other trace of when they last played
+    private void loadRecent(Connection conn, PlayerTable table, int firstDay, int count, Remainder remainder)
+            throws SQLException {
+        List<UUID> recent = new ArrayList<>(Math.min(count, 1024));
+        if (count > 0) {
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "SELECT id FROM playtime_days WHERE day >= ? GROUP BY id ORDER BY MAX(day) DESC LIMIT ?")) {
+                statement.setInt(1, firstDay);
+                statement.setInt(2, count);
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        recent.add(result.getObject(1, UUID.class));
+                    }
+                }
+            }
+        }
+        Array ids = conn.createArrayOf("UUID", recent.toArray());
+        readPlayers(conn, ids, table);
+
+        try (PreparedStatement statement = conn.prepareStatement(
+                "SELECT id, name, playtime FROM playtimes WHERE NOT (id = ANY(?))")) {
+            statement.setArray(1, ids);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    remainder.player(result.getObject(1, UUID.class), result.getString(2), result.getLong(3));
+                }
+            }
+        }
+        try (PreparedStatement statement = conn.prepareStatement(
+                "SELECT day, SUM(seconds) FROM playtime_days WHERE day >= ? AND NOT (id = ANY(?)) GROUP BY day ORDER BY day")) {
+            statement.setInt(1, firstDay);
+            statement.setArray(2, ids);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    remainder.serverDay(result.getInt(1), (int) Math.min(result.getLong(2), Integer.MAX_VALUE));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<PlayerRecord> loadPlayers(Collection<UUID> playerIds) throws IOException {
+        PlayerTable loaded = new PlayerTable(playerIds.size());
+        try {
+            Connection conn = getConnection();
+            readPlayers(conn, conn.createArrayOf("UUID", playerIds.toArray()), loaded);
+            conn.commit();
+        } catch (SQLException e) {
+            throw new IOException("Failed to load " + playerIds.size() + " players", e);
+        }
+
+        List<PlayerRecord> records = new ArrayList<>(loaded.size());
+        loaded.forEach(records::add);
+        return records;
+    }
+
+    private static void readPlayers(Connection conn, Array ids, PlayerTable loaded) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement(
+                "SELECT id, name, playtime, active_time FROM playtimes WHERE id = ANY(?)")) {
+            statement.setArray(1, ids);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    PlayerRecord record = loaded.getOrCreate(result.getObject(1, UUID.class));
+                    record.name = result.getString(2);
+                    record.playtime = result.getLong(3);
+                    record.activeTime = result.getLong(4);
+                }
+            }
+        }
+        try (PreparedStatement statement = conn.prepareStatement("SELECT id, reward FROM rewards WHERE id = ANY(?)")) {
+            statement.setArray(1, ids);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    PlayerRecord record = loaded.get(result.getObject(1, UUID.class));
+                    if (record != null) {
+                        record.addReward(result.getInt(2));
+                    }
+                }
+            }
+        }
+        try (PreparedStatement statement = conn.prepareStatement(
+                "SELECT id, dimension, playtime FROM playtime_dimensions WHERE id = ANY(?)")) {
+            statement.setArray(1, ids);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    PlayerRecord record = loaded.get(result.getObject(1, UUID.class));
+                    if (record != null) {
+                        record.addDimensionTime(DimensionIds.intern(result.getString(2)), result.getLong(3));
+                    }
+                }
+            }
+        }
+        try (PreparedStatement statement = conn.prepareStatement(
+                "SELECT id, day, seconds FROM playtime_days WHERE id = ANY(?) AND day >= ? ORDER BY id, day")) {
+            statement.setArray(1, ids);
+            statement.setInt(2, firstKeptDay());
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    PlayerRecord record = loaded.get(result.getObject(1, UUID.class));
+                    if (record != null) {
+                        record.addHistory(result.getInt(2), result.getInt(3));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int firstKeptDay() {
+        return PlaytimeHistory.dayOf(System.currentTimeMillis()) - PlaytimeHistory.retainedDays() + 1;
+    }
+
+    // Servers sharing the database register new rewards concurrently; whoever loses the insert race re-reads
+    @Override
+    public Map<String, Integer> registerRewards(Map<String, Integer> legacySlots) throws IOException {
+        try {
+            Connection conn = getConnection();
+            for (int attempt = 1; ; attempt++) {
+                Map<String, Integer> registered = readRewardSlots(conn);
+                Map<String, Integer> added = new LinkedHashMap<>();
+                if (registered.isEmpty() && legacyStore != null) {
+                    // Slots assigned while the data still lived in files
+                    added.putAll(legacyStore.readRewardSlots());
+                }
+                Map<String, Integer> known = new HashMap<>(registered);
+                known.putAll(added);
+                added.putAll(RewardSchedule.newSlots(known, legacySlots));
+                if (added.isEmpty()) {
+                    return registered;
+                }
+
+                try (PreparedStatement insert = conn.prepareStatement(
+                        "INSERT INTO reward_slots (reward_id, slot) VALUES (?, ?)")) {
+                    for (Map.Entry<String, Integer> entry : added.entrySet()) {
+                        insert.setString(1, entry.getKey());
+                        insert.setInt(2, entry.getValue());
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                    conn.commit();
+                    registered.putAll(added);
+                    return registered;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    if (attempt >= 3 || !isIntegrityViolation(e)) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to register reward slots", e);
+        }
+    }
+
+    private static Map<String, Integer> readRewardSlots(Connection conn) throws SQLException {
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet result = statement.executeQuery("SELECT reward_id, slot FROM reward_slots")) {
+            while (result.next()) {
+                slots.put(result.getString(1), result.getInt(2));
+            }
+        }
+        conn.commit();
+        return slots;
+    }
+
+    private static boolean isIntegrityViolation(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            if (next.getSQLState() != null && next.getSQLState().startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean needsFullWrite() {
+        return imported;
+    }
+
+    @Override
+    public boolean isAppendOnly() {
+        return false;
+    }
+
+    @Override
+    public PlaytimeLeaderboard.Page queryTop(int offset, int limit, Collection<UUID> excluded) throws IOException {
+        List<PlaytimeLeaderboard.Entry> entries = new ArrayList<>(limit);
+        int total;
+        try {
+            Connection conn = getConnection();
+            Array excludedIds = conn.createArrayOf("UUID", excluded.toArray());
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "SELECT id, playtime FROM playtimes WHERE NOT (id = ANY(?)) ORDER BY playtime DESC, id LIMIT ? OFFSET ?");
+                 PreparedStatement count = conn.prepareStatement(
+                         "SELECT COUNT(*) FROM playtimes WHERE NOT (id = ANY(?))")) {
+                statement.setArray(1, excludedIds);
+                statement.setInt(2, limit);
+                statement.setInt(3, offset);
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        entries.add(new PlaytimeLeaderboard.Entry(result.getObject(1, UUID.class), result.getLong(2)));
+                    }
+                }
+                count.setArray(1, excludedIds);
+                try (ResultSet result = count.executeQuery()) {
+                    total = result.next() ? result.getInt(1) : 0;
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            throw new IOException("Failed to query playtime leaderboard", e);
+        }
+        return new PlaytimeLeaderboard.Page(entries, total);
+    }
+
+    @Override
+    public Map<UUID, Totals> readPlaytimes(Collection<UUID> playerIds) throws IOException {
+        Map<UUID, Totals> playtimes = new HashMap<>();
+        if (playerIds.isEmpty()) {
+            return playtimes;
+        }
+
+        try {
+            Connection conn = getConnection();
+            try (PreparedStatement statement = conn.prepareStatement("SELECT id, playtime, active_time FROM playtimes WHERE id = ANY(?)")) {
+                statement.setArray(1, conn.createArrayOf("UUID", playerIds.toArray()));
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        playtimes.put(result.getObject(1, UUID.class), new Totals(result.getLong(2), result.getLong(3)));
+                    }
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            throw new IOException("Failed to read " + playerIds.size() + " playtimes", e);
+        }
+        return playtimes;
+    }
+
+    @Override
+    public Set<Integer> claimRewards(UUID playerId, Collection<Integer> rewards, String nodeId) throws IOException {
+        Set<Integer> claimed = new HashSet<>();
+        try {
+            Connection conn = getConnection();
+            try (PreparedStatement claim = conn.prepareStatement(
+                    "INSERT INTO reward_claims (id, reward, node, claimed_at) VALUES (?, ?, ?, ?)")) {
+                for (int reward : rewards) {
+                    claim.setObject(1, playerId);
+                    claim.setInt(2, reward);
+                    claim.setString(3, nodeId);
+                    claim.setLong(4, System.currentTimeMillis());
+                    try {
+                        claim.executeUpdate();
+                        claimed.add(reward);
+                    } catch (SQLException e) {
+                        // Integrity violation: another server already owns this grant
+                        if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+                            throw e;
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to claim rewards for " + playerId, e);
+        }
+        return claimed;
+    }
+
+    @Override
+    public void releaseReward(UUID playerId, int reward) throws IOException {
+        try {
+            Connection conn = getConnection();
+            try (PreparedStatement release = conn.prepareStatement("DELETE FROM reward_claims WHERE id = ? AND reward = ?")) {
+                release.setObject(1, playerId);
+                release.setInt(2, reward);
+                release.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to release reward #" + reward + " for " + playerId, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.error("Failed to close SQL playtime store", e);
+        }
+        connection = null;
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            Properties properties = new Properties();
+            properties.setProperty("user", user);
+            properties.setProperty("password", password);
+
+            connection = new org.h2.Driver().connect(url, properties);
+            if (connection == null) {
+                throw new SQLException("Unsupported JDBC URL: " + url);
+            }
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,117 @@
+package fr.neocle.simpleplaytime.data;
+
+import java.util.UUID;
+
+// Open-addressing set of UUIDs kept as two long arrays, for players that exist in storage but are not resident.
+// Costs under 60 bytes per evicted player, well below a resident record, but it still grows with every player.
+public class UuidSet {
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private boolean[] used;
+    private int size;
+    private int resizeThreshold;
+
+    public UuidSet() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public boolean add(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int mask = used.length - 1;
+        int i = PlayerTable.hash(msb, lsb) & mask;
+        for (; used[i]; i = (i + 1) & mask) {
+            if (mostSigBits[i] == msb && leastSigBits[i] == lsb) {
+                return false;
+            }
+        }
+
+        used[i] = true;
+        mostSigBits[i] = msb;
+        leastSigBits[i] = lsb;
+        if (++size > resizeThreshold) {
+            resize(used.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(UUID id) {
+        return indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits()) >= 0;
+    }
+
+    public boolean remove(UUID id) {
+        int i = indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (i < 0) {
+            return false;
+        }
+
+        used[i] = false;
+        size--;
+        shiftBack(i);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private int indexOf(long msb, long lsb) {
+        int mask = used.length - 1;
+        for (int i = PlayerTable.hash(msb, lsb) & mask; used[i]; i = (i + 1) & mask) {
+            if (mostSigBits[i] == msb && leastSigBits[i] == lsb) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void shiftBack(int gap) {
+        int mask = used.length - 1;
+        for (int i = (gap + 1) & mask; used[i]; i = (i + 1) & mask) {
+            int home = PlayerTable.hash(mostSigBits[i], leastSigBits[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                used[gap] = true;
+                mostSigBits[gap] = mostSigBits[i];
+                leastSigBits[gap] = leastSigBits[i];
+                used[i] = false;
+                gap = i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldMost = mostSigBits;
+        long[] oldLeast = leastSigBits;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int j = 0; j < oldUsed.length; j++) {
+            if (oldUsed[j]) {
+                int i = PlayerTable.hash(oldMost[j], oldLeast[j]) & mask;
+                while (used[i]) {
+                    i = (i + 1) & mask;
+                }
+                used[i] = true;
+                mostSigBits[i] = oldMost[j];
+                leastSigBits[i] = oldLeast[j];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        used = new boolean[capacity];
+        size = 0;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,145 @@
+package fr.neocle.simpleplaytime.data;
+
+import com.google.gson.stream.JsonReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+// Reads minecraft:play_time out of the vanilla world/stats/<uuid>.json files.
+public class VanillaStatsImporter {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long MILLIS_PER_TICK = 50L;
+    private static final int PROGRESS_STEPS = 10;
+
+    public enum Policy {
+        MAX, REPLACE, ADD;
+
+        public long merge(long current, long imported) {
+            return switch (this) {
+                case MAX -> Math.max(current, imported);
+                case REPLACE -> imported;
+                case ADD -> current + imported;
+            };
+        }
+    }
+
+    public record Entry(UUID playerId, long playtime) {
+    }
+
+    public record Result(int files, int unreadable, List<Entry> entries) {
+    }
+
+    public record Summary(int files, int unreadable, int players, int changed) {
+    }
+
+    // Parses every stats file on a dedicated fork-join pool; progress receives the number of files read so far
+    public static CompletableFuture<Result> read(Path statsDir, IntConsumer progress) {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        CompletableFuture<Result> result = CompletableFuture.supplyAsync(() -> {
+            List<Path> files = listStatsFiles(statsDir);
+            int step = Math.max(1, files.size() / PROGRESS_STEPS);
+            AtomicInteger parsed = new AtomicInteger();
+
+            List<Entry> entries = files.parallelStream()
+                    .map(file -> {
+                        Entry entry = parseFile(file);
+                        int done = parsed.incrementAndGet();
+                        if (done % step == 0 && done < files.size()) {
+                            progress.accept(done);
+                        }
+                        return entry;
+                    })
+                    .toList();
+
+            List<Entry> imported = entries.stream().filter(Objects::nonNull).toList();
+            return new Result(files.size(), files.size() - imported.size(), imported);
+        }, pool);
+        result.whenComplete((ignored, e) -> pool.shutdown());
+        return result;
+    }
+
+    private static List<Path> listStatsFiles(Path statsDir) {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(statsDir)) {
+            return files;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(statsDir, "*.json")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("Failed to list " + statsDir, e));
+        }
+        return files;
+    }
+
+    // Returns null for files that are not named after a UUID or cannot be parsed
+    private static Entry parseFile(Path file) {
+        String fileName = file.getFileName().toString();
+        UUID playerId;
+        try {
+            playerId = UUID.fromString(fileName.substring(0, fileName.length() - ".json".length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new Entry(playerId, readPlayTicks(reader) * MILLIS_PER_TICK);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read vanilla stats file {}: {}", fileName, e.getMessage());
+            return null;
+        }
+    }
+
+    // Streams {"stats": {"minecraft:custom": {"minecraft:play_time": ticks}}}, skipping everything else
+    static long readPlayTicks(Reader source) throws IOException {
+        long ticks = 0L;
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("stats")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!reader.nextName().equals("minecraft:custom")) {
+                        reader.skipValue();
+                        continue;
+                    }
+
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            // play_one_minute is the pre-1.17 name of the same statistic
+                            case "minecraft:play_time", "minecraft:play_one_minute" -> ticks = reader.nextLong();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        return ticks;
+    }
+}
@@ -0,0 +1,69 @@
+package fr.neocle.simpleplaytime.integration;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.node.types.PermissionNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// The only class touching the LuckPerms API, so the mod loads without it
+class LuckPermsBackend implements PermissionBackend {
+    private final LuckPerms luckPerms;
+
+    LuckPermsBackend(LuckPerms luckPerms) {
+        this.luckPerms = luckPerms;
+    }
+
+    @Override
+    public CompletableFuture<Void> addNodes(UUID playerId, List<String> groups, List<String> permissions) {
+        List<Node> nodes = new ArrayList<>(groups.size() + permissions.size());
+        for (String group : groups) {
+            nodes.add(InheritanceNode.builder(group).build());
+        }
+        for (String permission : permissions) {
+            nodes.add(PermissionNode.builder(permission).build());
+        }
+
+        return luckPerms.getUserManager().modifyUser(playerId, user -> {
+            for (Node node : nodes) {
+                user.data().add(node);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> removeGroup(UUID playerId, String group) {
+        return removeNode(playerId, InheritanceNode.builder(group).build());
+    }
+
+    @Override
+    public CompletableFuture<Void> removePermission(UUID playerId, String permission) {
+        return removeNode(playerId, PermissionNode.builder(permission).build());
+    }
+
+    private CompletableFuture<User> loadUser(UUID playerId) {
+        User user = luckPerms.getUserManager().getUser(playerId);
+        if (user != null) {
+            return CompletableFuture.completedFuture(user);
+        }
+
+        return luckPerms.getUserManager().loadUser(playerId).thenApply(loaded -> {
+            if (loaded == null) {
+                throw new IllegalStateException("Could not load user data for " + playerId);
+            }
+            return loaded;
+        });
+    }
+
+    private CompletableFuture<Void> removeNode(UUID playerId, Node node) {
+        return loadUser(playerId).thenCompose(user -> {
+            user.data().remove(node);
+            return luckPerms.getUserManager().saveUser(user);
+        });
+    }
+}
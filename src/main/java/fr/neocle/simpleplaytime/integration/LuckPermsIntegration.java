@@ -1,177 +1,117 @@
 package fr.neocle.simpleplaytime.integration;
 
-import net.luckperms.api.LuckPerms;
 import net.luckperms.api.LuckPermsProvider;
-import net.luckperms.api.model.user.User;
-import net.luckperms.api.node.NodeEqualityPredicate;
-import net.luckperms.api.node.types.InheritanceNode;
-import net.luckperms.api.node.types.PermissionNode;
 import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.fml.ModList;
+import fr.neocle.simpleplaytime.util.PlaytimeMetrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.UUID;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public class LuckPermsIntegration {
     private static final Logger LOGGER = LogManager.getLogger();
-    private static LuckPerms luckPerms;
+    private static final String LUCKPERMS_MOD_ID = "luckperms";
+    private static volatile PermissionBackend backend;
 
     public static void initialize() {
+        // The API classes are only on the classpath when the mod is installed
+        if (!ModList.get().isLoaded(LUCKPERMS_MOD_ID)) {
+            LOGGER.warn("LuckPerms not found, group/permission rewards will not work");
+            backend = null;
+            return;
+        }
+
         try {
-            luckPerms = LuckPermsProvider.get();
+            backend = new LuckPermsBackend(LuckPermsProvider.get());
             LOGGER.info("LuckPerms integration initialized successfully");
         } catch (IllegalStateException e) {
             LOGGER.warn("LuckPerms not found, group/permission rewards will not work");
-            luckPerms = null;
+            backend = null;
         }
     }
 
-    public static boolean isAvailable() {
-        return luckPerms != null;
+    // Replaces LuckPerms, e.g. with a local stub in the game tests; null disables group/permission rewards
+    public static void setBackend(PermissionBackend permissionBackend) {
+        backend = permissionBackend;
     }
 
-    public static boolean addPlayerToGroup(ServerPlayer player, String groupName) {
-        if (!isAvailable()) {
-            LOGGER.warn("LuckPerms not available, cannot add player {} to group {}", player.getGameProfile().getName(), groupName);
-            return false;
-        }
-
-        UUID playerId = player.getUUID();
-
-        try {
-            User user = luckPerms.getUserManager().getUser(playerId);
-            if (user == null) {
-                CompletableFuture<User> userFuture = luckPerms.getUserManager().loadUser(playerId);
-                user = userFuture.join();
-            }
-
-            if (user == null) {
-                LOGGER.error("Could not load user data for {}", player.getGameProfile().getName());
-                return false;
-            }
-
-            InheritanceNode node = InheritanceNode.builder(groupName).build();
-
-            if (user.data().contains(node, NodeEqualityPredicate.IGNORE_EXPIRY_TIME).asBoolean()) {
-                LOGGER.info("Player {} already has group {}", player.getGameProfile().getName(), groupName);
-                return true;
-            }
-
-            user.data().add(node);
-            luckPerms.getUserManager().saveUser(user);
+    public static boolean isAvailable() {
+        return backend != null;
+    }
 
-            LOGGER.info("Successfully added player {} to group {}", player.getGameProfile().getName(), groupName);
-            return true;
+    public static CompletableFuture<Boolean> addPlayerToGroup(ServerPlayer player, String groupName) {
+        return grantRewards(player, List.of(groupName), List.of());
+    }
 
-        } catch (Exception e) {
-            LOGGER.error("Failed to add player {} to group {}", player.getGameProfile().getName(), groupName, e);
-            return false;
-        }
+    public static CompletableFuture<Boolean> givePlayerPermission(ServerPlayer player, String permission) {
+        return grantRewards(player, List.of(), List.of(permission));
     }
 
-    public static boolean givePlayerPermission(ServerPlayer player, String permission) {
-        if (!isAvailable()) {
-            LOGGER.warn("LuckPerms not available, cannot give permission {} to player {}", permission, player.getGameProfile().getName());
-            return false;
+    public static CompletableFuture<Boolean> grantRewards(ServerPlayer player, List<String> groups, List<String> permissions) {
+        String playerName = player.getGameProfile().getName();
+        PermissionBackend target = backend;
+        if (target == null) {
+            LOGGER.warn("LuckPerms not available, cannot give groups {} and permissions {} to player {}", groups, permissions, playerName);
+            return CompletableFuture.completedFuture(false);
         }
 
-        UUID playerId = player.getUUID();
-
-        try {
-            User user = luckPerms.getUserManager().getUser(playerId);
-            if (user == null) {
-                CompletableFuture<User> userFuture = luckPerms.getUserManager().loadUser(playerId);
-                user = userFuture.join();
-            }
-
-            if (user == null) {
-                LOGGER.error("Could not load user data for {}", player.getGameProfile().getName());
-                return false;
-            }
-
-            PermissionNode node = PermissionNode.builder(permission).build();
-
-            if (user.data().contains(node, NodeEqualityPredicate.IGNORE_EXPIRY_TIME).asBoolean()) {
-                LOGGER.info("Player {} already has permission {}", player.getGameProfile().getName(), permission);
-                return true;
-            }
-
-            user.data().add(node);
-            luckPerms.getUserManager().saveUser(user);
-
-            LOGGER.info("Successfully gave permission {} to player {}", permission, player.getGameProfile().getName());
-            return true;
-
-        } catch (Exception e) {
-            LOGGER.error("Failed to give permission {} to player {}", permission, player.getGameProfile().getName(), e);
-            return false;
-        }
+        long start = System.nanoTime();
+        return target.addNodes(player.getUUID(), groups, permissions)
+                .thenApply(v -> {
+                    PlaytimeMetrics.luckPermsCall(System.nanoTime() - start, true);
+                    LOGGER.info("Successfully gave groups {} and permissions {} to player {}", groups, permissions, playerName);
+                    return true;
+                })
+                .exceptionally(e -> {
+                    PlaytimeMetrics.luckPermsCall(System.nanoTime() - start, false);
+                    LOGGER.error("Failed to give groups {} and permissions {} to player {}", groups, permissions, playerName, e);
+                    return false;
+                });
     }
 
-    public static boolean removePlayerFromGroup(ServerPlayer player, String groupName) {
-        if (!isAvailable()) {
-            LOGGER.warn("LuckPerms not available, cannot remove player {} from group {}", player.getGameProfile().getName(), groupName);
-            return false;
+    public static CompletableFuture<Boolean> removePlayerFromGroup(ServerPlayer player, String groupName) {
+        String playerName = player.getGameProfile().getName();
+        PermissionBackend target = backend;
+        if (target == null) {
+            LOGGER.warn("LuckPerms not available, cannot remove player {} from group {}", playerName, groupName);
+            return CompletableFuture.completedFuture(false);
         }
 
-        UUID playerId = player.getUUID();
-
-        try {
-            User user = luckPerms.getUserManager().getUser(playerId);
-            if (user == null) {
-                CompletableFuture<User> userFuture = luckPerms.getUserManager().loadUser(playerId);
-                user = userFuture.join();
-            }
-
-            if (user == null) {
-                LOGGER.error("Could not load user data for {}", player.getGameProfile().getName());
-                return false;
-            }
-
-            InheritanceNode node = InheritanceNode.builder(groupName).build();
-            user.data().remove(node);
-            luckPerms.getUserManager().saveUser(user);
-
-            LOGGER.info("Successfully removed player {} from group {}", player.getGameProfile().getName(), groupName);
-            return true;
-
-        } catch (Exception e) {
-            LOGGER.error("Failed to remove player {} from group {}", player.getGameProfile().getName(), groupName, e);
-            return false;
-        }
+        long start = System.nanoTime();
+        return target.removeGroup(player.getUUID(), groupName)
+                .thenApply(v -> {
+                    PlaytimeMetrics.luckPermsCall(System.nanoTime() - start, true);
+                    LOGGER.info("Successfully removed player {} from group {}", playerName, groupName);
+                    return true;
+                })
+                .exceptionally(e -> {
+                    PlaytimeMetrics.luckPermsCall(System.nanoTime() - start, false);
+                    LOGGER.error("Failed to remove player {} from group {}", playerName, groupName, e);
+                    return false;
+                });
     }
 
-    public static boolean removePlayerPermission(ServerPlayer player, String permission) {
-        if (!isAvailable()) {
-            LOGGER.warn("LuckPerms not available, cannot remove permission {} from player {}", permission, player.getGameProfile().getName());
-            return false;
+    public static CompletableFuture<Boolean> removePlayerPermission(ServerPlayer player, String permission) {
+        String playerName = player.getGameProfile().getName();
+        PermissionBackend target = backend;
+        if (target == null) {
+            LOGGER.warn("LuckPerms not available, cannot remove permission {} from player {}", permission, playerName);
+            return CompletableFuture.completedFuture(false);
         }
 
-        UUID playerId = player.getUUID();
-
-        try {
-            User user = luckPerms.getUserManager().getUser(playerId);
-            if (user == null) {
-                CompletableFuture<User> userFuture = luckPerms.getUserManager().loadUser(playerId);
-                user = userFuture.join();
-            }
-
-            if (user == null) {
-                LOGGER.error("Could not load user data for {}", player.getGameProfile().getName());
-                return false;
-            }
-
-            PermissionNode node = PermissionNode.builder(permission).build();
-            user.data().remove(node);
-            luckPerms.getUserManager().saveUser(user);
-
-            LOGGER.info("Successfully removed permission {} from player {}", permission, player.getGameProfile().getName());
-            return true;
-
-        } catch (Exception e) {
-            LOGGER.error("Failed to remove permission {} from player {}", permission, player.getGameProfile().getName(), e);
-            return false;
-        }
+        long start = System.nanoTime();
+        return target.removePermission(player.getUUID(), permission)
+                .thenApply(v -> {
+                    PlaytimeMetrics.luckPermsCall(System.nanoTime() - start, true);
+                    LOGGER.info("Successfully removed permission {} from player {}", permission, playerName);
+                    return true;
+                })
+                .exceptionally(e -> {
+                    PlaytimeMetrics.luckPermsCall(System.nanoTime() - start, false);
+                    LOGGER.error("Failed to remove permission {} from player {}", permission, playerName, e);
+                    return false;
+                });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package fr.neocle.simpleplaytime.integration;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Where group and permission rewards are applied. LuckPerms in production; the futures may complete on any thread
+// and complete exceptionally when the change could not be saved.
+public interface PermissionBackend {
+    CompletableFuture<Void> addNodes(UUID playerId, List<String> groups, List<String> permissions);
+
+    CompletableFuture<Void> removeGroup(UUID playerId, String group);
+
+    CompletableFuture<Void> removePermission(UUID playerId, String permission);
+}
@@ -0,0 +1,286 @@
+package fr.neocle.simpleplaytime.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters and latency histograms, shown by /playtime debug and exported over JMX.
+// Recording only touches atomics so it is safe on the tick path and from the writer thread.
+public class PlaytimeMetrics {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final String OBJECT_NAME = "fr.neocle.simpleplaytime:type=Metrics";
+
+    public static final LatencyHistogram TICK = new LatencyHistogram();
+    public static final LatencyHistogram JOURNAL_WRITE = new LatencyHistogram();
+    public static final LatencyHistogram COMPACTION = new LatencyHistogram();
+    public static final LatencyHistogram LOAD = new LatencyHistogram();
+    public static final LatencyHistogram LUCKPERMS = new LatencyHistogram();
+    public static final LatencyHistogram REWARD_COMMAND = new LatencyHistogram();
+    // Time from a reward command being queued to it running
+    public static final LatencyHistogram REWARD_COMMAND_WAIT = new LatencyHistogram();
+
+    private static final LongAdder rewardChecks = new LongAdder();
+    private static final LongAdder rewardsFired = new LongAdder();
+    private static final LongAdder bytesWritten = new LongAdder();
+    private static final LongAdder luckPermsFailures = new LongAdder();
+
+    private static volatile int trackedPlayers;
+    private static volatile int onlinePlayers;
+    private static volatile int evictedPlayers;
+    private static volatile int rewardCommandQueueDepth;
+    private static final AtomicInteger rewardCommandQueuePeak = new AtomicInteger();
+
+    public static void rewardCheck() {
+        rewardChecks.increment();
+    }
+
+    public static void rewardsFired(int count) {
+        rewardsFired.add(count);
+    }
+
+    public static void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public static void luckPermsCall(long nanos, boolean success) {
+        LUCKPERMS.record(nanos);
+        if (!success) {
+            luckPermsFailures.increment();
+        }
+    }
+
+    public static void playerCounts(int tracked, int online, int evicted) {
+        trackedPlayers = tracked;
+        onlinePlayers = online;
+        evictedPlayers = evicted;
+    }
+
+    public static void rewardCommandQueueDepth(int depth) {
+        rewardCommandQueueDepth = depth;
+        rewardCommandQueuePeak.accumulateAndGet(depth, Math::max);
+    }
+
+    public static long getRewardChecks() {
+        return rewardChecks.sum();
+    }
+
+    public static long getRewardsFired() {
+        return rewardsFired.sum();
+    }
+
+    public static long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public static long getLuckPermsFailures() {
+        return luckPermsFailures.sum();
+    }
+
+    public static int getTrackedPlayers() {
+        return trackedPlayers;
+    }
+
+    public static int getOnlinePlayers() {
+        return onlinePlayers;
+    }
+
+    public static int getEvictedPlayers() {
+        return evictedPlayers;
+    }
+
+    public static int getRewardCommandQueueDepth() {
+        return rewardCommandQueueDepth;
+    }
+
+    public static int getRewardCommandQueuePeak() {
+        return rewardCommandQueuePeak.get();
+    }
+
+    // Player counts and the queue depth are gauges and survive a reset; the peak restarts from the current depth
+    public static void reset() {
+        TICK.reset();
+        JOURNAL_WRITE.reset();
+        COMPACTION.reset();
+        LOAD.reset();
+        LUCKPERMS.reset();
+        REWARD_COMMAND.reset();
+        REWARD_COMMAND_WAIT.reset();
+        rewardCommandQueuePeak.set(rewardCommandQueueDepth);
+        rewardChecks.reset();
+        rewardsFired.reset();
+        bytesWritten.reset();
+        luckPermsFailures.reset();
+    }
+
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MXBean(), name);
+            }
+        } catch (JMException | RuntimeException e) {
+            LOGGER.warn("Failed to register playtime metrics MBean", e);
+        }
+    }
+
+    public static void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | RuntimeException e) {
+            LOGGER.warn("Failed to unregister playtime metrics MBean", e);
+        }
+    }
+
+    private static class MXBean implements PlaytimeMetricsMXBean {
+        @Override
+        public long getTicks() {
+            return TICK.count();
+        }
+
+        @Override
+        public long getTickNanosP50() {
+            return TICK.percentile(0.50);
+        }
+
+        @Override
+        public long getTickNanosP99() {
+            return TICK.percentile(0.99);
+        }
+
+        @Override
+        public long getTickNanosMax() {
+            return TICK.max();
+        }
+
+        @Override
+        public long getRewardChecks() {
+            return PlaytimeMetrics.getRewardChecks();
+        }
+
+        @Override
+        public long getRewardsFired() {
+            return PlaytimeMetrics.getRewardsFired();
+        }
+
+        @Override
+        public long getJournalWrites() {
+            return JOURNAL_WRITE.count();
+        }
+
+        @Override
+        public long getJournalWriteNanosP50() {
+            return JOURNAL_WRITE.percentile(0.50);
+        }
+
+        @Override
+        public long getJournalWriteNanosP99() {
+            return JOURNAL_WRITE.percentile(0.99);
+        }
+
+        @Override
+        public long getCompactions() {
+            return COMPACTION.count();
+        }
+
+        @Override
+        public long getCompactionNanosP50() {
+            return COMPACTION.percentile(0.50);
+        }
+
+        @Override
+        public long getCompactionNanosP99() {
+            return COMPACTION.percentile(0.99);
+        }
+
+        @Override
+        public long getLoads() {
+            return LOAD.count();
+        }
+
+        @Override
+        public long getLoadNanosMax() {
+            return LOAD.max();
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return PlaytimeMetrics.getBytesWritten();
+        }
+
+        @Override
+        public long getLuckPermsCalls() {
+            return LUCKPERMS.count();
+        }
+
+        @Override
+        public long getLuckPermsFailures() {
+            return PlaytimeMetrics.getLuckPermsFailures();
+        }
+
+        @Override
+        public long getLuckPermsNanosP50() {
+            return LUCKPERMS.percentile(0.50);
+        }
+
+        @Override
+        public long getLuckPermsNanosP99() {
+            return LUCKPERMS.percentile(0.99);
+        }
+
+        @Override
+        public long getRewardCommands() {
+            return REWARD_COMMAND.count();
+        }
+
+        @Override
+        public long getRewardCommandNanosP99() {
+            return REWARD_COMMAND.percentile(0.99);
+        }
+
+        @Override
+        public long getRewardCommandWaitNanosP99() {
+            return REWARD_COMMAND_WAIT.percentile(0.99);
+        }
+
+        @Override
+        public int getRewardCommandQueueDepth() {
+            return PlaytimeMetrics.getRewardCommandQueueDepth();
+        }
+
+        @Override
+        public int getRewardCommandQueuePeak() {
+            return PlaytimeMetrics.getRewardCommandQueuePeak();
+        }
+
+        @Override
+        public int getTrackedPlayers() {
+            return PlaytimeMetrics.getTrackedPlayers();
+        }
+
+        @Override
+        public int getOnlinePlayers() {
+            return PlaytimeMetrics.getOnlinePlayers();
+        }
+
+        @Override
+        public int getEvictedPlayers() {
+            return PlaytimeMetrics.getEvictedPlayers();
+        }
+
+        @Override
+        public void reset() {
+            PlaytimeMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fr.neocle.simpleplaytime.util;
+
+// Read-only view of PlaytimeMetrics for JMX clients, durations in nanoseconds
+public interface PlaytimeMetricsMXBean {
+    long getTicks();
+
+    long getTickNanosP50();
+
+    long getTickNanosP99();
+
+    long getTickNanosMax();
+
+    long getRewardChecks();
+
+    long getRewardsFired();
+
+    long getJournalWrites();
+
+    long getJournalWriteNanosP50();
+
+    long getJournalWriteNanosP99();
+
+    long getCompactions();
+
+    long getCompactionNanosP50();
+
+    long getCompactionNanosP99();
+
+    long getLoads();
+
+    long getLoadNanosMax();
+
+    long getBytesWritten();
+
+    long getLuckPermsCalls();
+
+    long getLuckPermsFailures();
+
+    long getLuckPermsNanosP50();
+
+    long getLuckPermsNanosP99();
+
+    long getRewardCommands();
+
+    long getRewardCommandNanosP99();
+
+    long getRewardCommandWaitNanosP99();
+
+    int getRewardCommandQueueDepth();
+
+    int getRewardCommandQueuePeak();
+
+    int getTrackedPlayers();
+
+    int getOnlinePlayers();
+
+    int getEvictedPlayers();
+
+    void reset();
+}
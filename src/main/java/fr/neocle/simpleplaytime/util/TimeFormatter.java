@@ -0,0 +1,24 @@
+package fr.neocle.simpleplaytime.util;
+
+public class TimeFormatter {
+    public static String formatPlaytime(long millis) {
+        long hours = millis / (1000 * 60 * 60);
+        long minutes = (millis % (1000 * 60 * 60)) / (1000 * 60);
+        long seconds = (millis % (1000 * 60)) / 1000;
+
+        return String.format("%dh %dm %ds", hours, minutes, seconds);
+    }
+
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000L) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000L) {
+            return String.format("%.1f\u00b5s", nanos / 1_000.0);
+        }
+        if (nanos < 1_000_000_000L) {
+            return String.format("%.1fms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000.0);
+    }
+}